@@ -0,0 +1,83 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.h2.tools.Server;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 벤치마크용 내장 H2
+ * - mem: 같은 JVM 안의 메모리 DB (네트워크 비용 없음)
+ * - tcp: 같은 JVM에서 띄운 H2 TCP 서버의 메모리 DB (localhost 왕복 비용 포함)
+ *
+ * TCP 포트는 -Dbenchmark.h2.port 로 바꿀 수 있다.
+ */
+public class BenchmarkDatabase {
+
+    public static final String USERNAME = "sa";
+    public static final String PASSWORD = "";
+
+    private final String url;
+    private final Server server;
+
+    private BenchmarkDatabase(String url, Server server) {
+        this.url = url;
+        this.server = server;
+    }
+
+    public static BenchmarkDatabase start(String mode, String name) throws SQLException {
+        BenchmarkDatabase database;
+        if ("mem".equals(mode)) {
+            database = new BenchmarkDatabase("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", null);
+        } else if ("tcp".equals(mode)) {
+            String port = System.getProperty("benchmark.h2.port", "9123");
+            Server server = Server.createTcpServer("-tcpPort", port, "-ifNotExists").start();
+            database = new BenchmarkDatabase("jdbc:h2:tcp://localhost:" + port + "/mem:" + name + ";DB_CLOSE_DELAY=-1", server);
+        } else {
+            throw new IllegalArgumentException("unknown mode: " + mode);
+        }
+        database.createSchema();
+        return database;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public HikariDataSource pooledDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(10);
+        return dataSource;
+    }
+
+    public DataSource driverManagerDataSource() {
+        return new DriverManagerDataSource(url, USERNAME, PASSWORD);
+    }
+
+    public void execute(String sql) throws SQLException {
+        try (Connection con = driverManagerDataSource().getConnection();
+             Statement stmt = con.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    public void stop() throws SQLException {
+        execute("DROP ALL OBJECTS");
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private void createSchema() throws SQLException {
+        execute("DROP TABLE MEMBER IF EXISTS");
+        execute("CREATE TABLE MEMBER (MEMBER_ID VARCHAR(10), MONEY INTEGER NOT NULL DEFAULT 0, VERSION BIGINT NOT NULL DEFAULT 0, PRIMARY KEY (MEMBER_ID))");
+    }
+
+}
@@ -0,0 +1,85 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.StripedConnectionPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 커넥션 대여/반납 비용 비교 (1, 8, 64 스레드)
+ * - driverManager: DriverManagerDataSource (매번 새 커넥션, 풀 없음)
+ * - hikari: HikariCP (maximumPoolSize 10)
+ * - striped: StripedConnectionPool (min 10, max 10)
+ *
+ * 64 스레드에서는 풀 크기(10)보다 스레드가 많아서 대기/handoff 비용까지 포함된다.
+ * ./gradlew jmh -Pjmh.includes=ConnectionPoolBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConnectionPoolBenchmark {
+
+    private static final int POOL_SIZE = 10;
+
+    @Param({"driverManager", "hikari", "striped"})
+    public String pool;
+
+    @Param({"tcp"})
+    public String db;
+
+    private BenchmarkDatabase database;
+    private DataSource dataSource;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        database = BenchmarkDatabase.start(db, "pool");
+        dataSource = switch (pool) {
+            case "driverManager" -> database.driverManagerDataSource();
+            case "hikari" -> database.pooledDataSource();
+            case "striped" -> new StripedConnectionPool(database.getUrl(), BenchmarkDatabase.USERNAME,
+                    BenchmarkDatabase.PASSWORD, POOL_SIZE, POOL_SIZE);
+            default -> throw new IllegalArgumentException("unknown pool: " + pool);
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (dataSource instanceof HikariDataSource hikari) {
+            hikari.close();
+        } else if (dataSource instanceof StripedConnectionPool striped) {
+            striped.close();
+        }
+        database.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void borrow_1(Blackhole blackhole) throws SQLException {
+        borrow(blackhole);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void borrow_8(Blackhole blackhole) throws SQLException {
+        borrow(blackhole);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void borrow_64(Blackhole blackhole) throws SQLException {
+        borrow(blackhole);
+    }
+
+    // 빌린 커넥션으로 아무것도 하지 않으면 반납만 측정되므로 autoCommit 조회 한 번을 포함한다.
+    private void borrow(Blackhole blackhole) throws SQLException {
+        try (Connection con = dataSource.getConnection()) {
+            blackhole.consume(con.getAutoCommit());
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.*;
+import hello.jdbc.service.*;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * 버전마다 다른 Repository / Service 시그니처를 벤치마크에서 같은 방식으로 호출하기 위한 어댑터
+ */
+public interface MemberOperations {
+
+    void save(Member member) throws Exception;
+
+    Member findById(String memberId) throws Exception;
+
+    void update(String memberId, int money) throws Exception;
+
+    void delete(String memberId) throws Exception;
+
+    void transfer(String fromId, String toId, int money) throws Exception;
+
+    static MemberOperations of(String version, DataSource dataSource) {
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        switch (version) {
+            case "V1": {
+                MemberRepositoryV1 repository = new MemberRepositoryV1(dataSource);
+                MemberServiceV1 service = new MemberServiceV1(repository);
+                return new MemberOperations() {
+                    public void save(Member member) throws Exception { repository.save(member); }
+                    public Member findById(String memberId) throws Exception { return repository.findById(memberId); }
+                    public void update(String memberId, int money) throws Exception { repository.update(memberId, money); }
+                    public void delete(String memberId) throws Exception { repository.delete(memberId); }
+                    public void transfer(String fromId, String toId, int money) throws Exception { service.accountTransfer(fromId, toId, money); }
+                };
+            }
+            case "V2": {
+                MemberRepositoryV2 repository = new MemberRepositoryV2(dataSource);
+                MemberServiceV2 service = new MemberServiceV2(dataSource, repository);
+                return new MemberOperations() {
+                    public void save(Member member) throws Exception { repository.save(member); }
+                    public Member findById(String memberId) throws Exception { return repository.findById(memberId); }
+                    public void update(String memberId, int money) throws Exception { repository.update(memberId, money); }
+                    public void delete(String memberId) throws Exception { repository.delete(memberId); }
+                    public void transfer(String fromId, String toId, int money) throws Exception { service.accountTransfer(fromId, toId, money); }
+                };
+            }
+            case "V3": {
+                MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource);
+                MemberServiceV3_1 service = new MemberServiceV3_1(transactionManager, repository);
+                return new MemberOperations() {
+                    public void save(Member member) throws Exception { repository.save(member); }
+                    public Member findById(String memberId) throws Exception { return repository.findById(memberId); }
+                    public void update(String memberId, int money) throws Exception { repository.update(memberId, money); }
+                    public void delete(String memberId) throws Exception { repository.delete(memberId); }
+                    public void transfer(String fromId, String toId, int money) throws Exception { service.accountTransfer(fromId, toId, money); }
+                };
+            }
+            case "V4_1":
+                return ofMemberRepository(new MemberRepositoryV4_1(dataSource), transactionManager);
+            case "V4_2":
+                return ofMemberRepository(new MemberRepositoryV4_2(dataSource), transactionManager);
+            case "V5":
+                return ofMemberRepository(new MemberRepositoryV5(dataSource), transactionManager);
+            default:
+                throw new IllegalArgumentException("unknown version: " + version);
+        }
+    }
+
+    // transfer는 V1 ~ V3 서비스와 같은 연산(조회 2번 + 수정 2번, 한 트랜잭션)으로 맞춘다.
+    // MemberServiceV4는 adjustBalance(MONEY = MONEY + ?)로 수정 2번만 실행하므로, 그대로 쓰면 버전 간 비교가 되지 않는다.
+    private static MemberOperations ofMemberRepository(MemberRepository repository, DataSourceTransactionManager transactionManager) {
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+
+        return new MemberOperations() {
+            public void save(Member member) { repository.save(member); }
+            public Member findById(String memberId) { return repository.findById(memberId); }
+            public void update(String memberId, int money) { repository.update(memberId, money); }
+            public void delete(String memberId) { repository.delete(memberId); }
+            public void transfer(String fromId, String toId, int money) {
+                txTemplate.executeWithoutResult(status -> {
+                    Member fromMember = repository.findById(fromId);
+                    Member toMember = repository.findById(toId);
+                    repository.update(fromId, fromMember.getMoney() - money);
+                    repository.update(toId, toMember.getMoney() + money);
+                });
+            }
+        };
+    }
+
+}
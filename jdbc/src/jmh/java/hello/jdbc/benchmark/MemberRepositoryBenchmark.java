@@ -0,0 +1,111 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemberRepositoryV1 ~ V5 계층별 비용 비교
+ * - V1_DriverManager: DriverManager (매번 새 커넥션)
+ * - V1: DataSource(Hikari)
+ * - V2: 커넥션 파라미터 전달 트랜잭션
+ * - V3: DataSourceUtils + 트랜잭션 매니저
+ * - V4_1, V4_2: 예외 변환 (TransactionTemplate)
+ * - V5: JdbcTemplate
+ *
+ * transfer는 모든 버전에서 같은 연산(한 트랜잭션 안에서 조회 2번 + 수정 2번)을 측정한다.
+ * MemberServiceV4의 adjustBalance 이체(수정 2번)는 연산 자체가 다르므로 여기서는 비교하지 않는다.
+ *
+ * V0는 ConnectionConst.URL(외부 H2 서버)에 고정되어 있으므로 같은 방식인 V1_DriverManager로 대신 측정한다.
+ * ./gradlew jmh -Pjmh.includes=MemberRepositoryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberRepositoryBenchmark {
+
+    private static final String MEMBER_A = "benchA";
+    private static final String MEMBER_B = "benchB";
+
+    @Param({"V1_DriverManager", "V1", "V2", "V3", "V4_1", "V4_2", "V5"})
+    public String version;
+
+    @Param({"mem", "tcp"})
+    public String db;
+
+    private BenchmarkDatabase database;
+    private DataSource dataSource;
+    private MemberOperations operations;
+
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        database = BenchmarkDatabase.start(db, "bench");
+        if ("V1_DriverManager".equals(version)) {
+            dataSource = database.driverManagerDataSource();
+            operations = MemberOperations.of("V1", dataSource);
+        } else {
+            dataSource = database.pooledDataSource();
+            operations = MemberOperations.of(version, dataSource);
+        }
+
+        // 이체를 반복해도 잔액이 부족하지 않도록 넉넉하게
+        operations.save(new Member(MEMBER_A, 1_000_000_000));
+        operations.save(new Member(MEMBER_B, 1_000_000_000));
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanUp() throws Exception {
+        database.execute("DELETE FROM MEMBER WHERE MEMBER_ID NOT IN ('" + MEMBER_A + "', '" + MEMBER_B + "')");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (dataSource instanceof HikariDataSource hikari) {
+            hikari.close();
+        }
+        database.stop();
+    }
+
+    @Benchmark
+    public Member findById() throws Exception {
+        return operations.findById(MEMBER_A);
+    }
+
+    @Benchmark
+    public void update() throws Exception {
+        operations.update(MEMBER_A, 1_000_000_000);
+    }
+
+    @Benchmark
+    public void save() throws Exception {
+        operations.save(new Member(nextId(), 0));
+    }
+
+    // delete 단독 비용은 saveAndDelete - save 로 계산한다. (삭제할 row를 측정 구간 밖에서 미리 만들 수 없기 때문)
+    @Benchmark
+    public void saveAndDelete() throws Exception {
+        String memberId = nextId();
+        operations.save(new Member(memberId, 0));
+        operations.delete(memberId);
+    }
+
+    // 방향을 번갈아 이체해서 잔액이 한쪽으로 몰리지 않게 한다.
+    @Benchmark
+    public void transfer() throws Exception {
+        if ((sequence++ & 1) == 0) {
+            operations.transfer(MEMBER_A, MEMBER_B, 1);
+        } else {
+            operations.transfer(MEMBER_B, MEMBER_A, 1);
+        }
+    }
+
+    private String nextId() {
+        return "s" + (sequence++);
+    }
+
+}
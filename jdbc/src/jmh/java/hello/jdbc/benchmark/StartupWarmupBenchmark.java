@@ -0,0 +1,87 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.DatabaseWarmup;
+import hello.jdbc.connection.LatencyHistogram;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 시작 직후 요청 지연 시간 - 워밍업 유무 비교
+ *
+ * 새 JVM(fork)마다 DataSource를 만들고, 워밍업 여부에 따라 DatabaseWarmup을 실행한 뒤
+ * 처음 REQUESTS 건의 findById를 한 건씩(SingleShotTime) 측정한다. JVM 워밍업이 섞이지 않도록 JMH 워밍업은 하지 않는다.
+ * trial이 끝나면 처음 REQUESTS 건의 p99를 출력한다.
+ *
+ * build.gradle의 jmh 설정(warmupIterations, iterations, fork)이 어노테이션보다 우선하므로 main()으로 실행한다.
+ * ./gradlew jmhJar && java -cp build/libs/jdbc-0.0.1-SNAPSHOT-jmh.jar hello.jdbc.benchmark.StartupWarmupBenchmark
+ */
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StartupWarmupBenchmark {
+
+    static final int REQUESTS = 2000;
+    static final String MEMBER_ID = "coldA";
+
+    @Param({"false", "true"})
+    public boolean warmup;
+
+    @Param({"tcp"})
+    public String db;
+
+    private BenchmarkDatabase database;
+    private HikariDataSource dataSource;
+    private MemberRepository repository;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        database = BenchmarkDatabase.start(db, "cold");
+        database.execute("INSERT INTO MEMBER(MEMBER_ID, MONEY) VALUES('" + MEMBER_ID + "', 10000)");
+
+        dataSource = database.pooledDataSource();
+        repository = new MemberRepositoryV4_2(dataSource);
+        if (warmup) {
+            long elapsed = new DatabaseWarmup(dataSource, repository, DatabaseWarmup.DEFAULT_ITERATIONS,
+                    DatabaseWarmup.WARMUP_MEMBER_ID).warmUp();
+            log.info("warm-up elapsed={}ms", elapsed);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        log.info("warmup={} first {} requests: {}", warmup, REQUESTS, latency);
+        dataSource.close();
+        database.stop();
+    }
+
+    @Benchmark
+    public Member findById() {
+        long start = System.nanoTime();
+        Member member = repository.findById(MEMBER_ID);
+        latency.record(System.nanoTime() - start);
+        return member;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(StartupWarmupBenchmark.class.getSimpleName())
+                .warmupIterations(0)
+                .measurementIterations(REQUESTS)
+                .forks(5)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,81 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Member 매핑 방식 비교 (GC profiler로 연산당 할당량 측정)
+ * - legacy: 호출마다 람다 생성 + 컬럼 이름으로 조회 + 기본 생성자/setter
+ * - indexed: 공유 MemberRowMapper + 인덱스 조회 + 생성자
+ * - beanProperty: BeanPropertyRowMapper (리플렉션)
+ *
+ * DB 조회 비용을 빼기 위해 H2 메모리 DB의 scrollable ResultSet 한 row를 반복해서 매핑한다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberRowMapperBenchmark {
+
+    private Connection con;
+    private ResultSet selectAllRs;
+    private ResultSet projectedRs;
+
+    private final RowMapper<Member> beanPropertyRowMapper = new BeanPropertyRowMapper<>(Member.class);
+
+    @Setup
+    public void setup() throws SQLException {
+        con = DriverManager.getConnection("jdbc:h2:mem:rowmapper;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS MEMBER(MEMBER_ID VARCHAR(10), MONEY INTEGER NOT NULL DEFAULT 0, VERSION BIGINT NOT NULL DEFAULT 0, PRIMARY KEY (MEMBER_ID))");
+            stmt.execute("MERGE INTO MEMBER(MEMBER_ID, MONEY) KEY(MEMBER_ID) VALUES('memberA', 10000)");
+        }
+        selectAllRs = scrollable("SELECT * FROM MEMBER");
+        projectedRs = scrollable("SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        selectAllRs.close();
+        projectedRs.close();
+        con.close();
+    }
+
+    @Benchmark
+    public Member legacy() throws SQLException {
+        selectAllRs.first();
+        return legacyRowMapper().mapRow(selectAllRs, 0);
+    }
+
+    @Benchmark
+    public Member indexed() throws SQLException {
+        projectedRs.first();
+        return MemberRowMapper.INSTANCE.mapRow(projectedRs, 0);
+    }
+
+    @Benchmark
+    public Member beanProperty() throws SQLException {
+        selectAllRs.first();
+        return beanPropertyRowMapper.mapRow(selectAllRs, 0);
+    }
+
+    private ResultSet scrollable(String sql) throws SQLException {
+        PreparedStatement pstmt = con.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        return pstmt.executeQuery();
+    }
+
+    // 변경 전 MemberRepositoryV5.memberRowMapper()
+    private RowMapper<Member> legacyRowMapper() {
+        return (rs, rowNum) -> {
+            Member member = new Member();
+            member.setMemberId(rs.getString("member_id"));
+            member.setMoney(rs.getInt("money"));
+            return member;
+        };
+    }
+
+}
@@ -0,0 +1,158 @@
+package hello.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.MemberRowMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 애플리케이션 시작 워밍업
+ *
+ * 배포 직후 첫 요청들이 커넥션 생성(H2 TCP 연결), 클래스 로딩, JIT 비용을 떠안지 않도록 트래픽을 받기 전에 미리 실행한다.
+ * ApplicationRunner는 ApplicationReadyEvent / ReadinessState.ACCEPTING_TRAFFIC 발행 전에 실행되므로
+ * 워밍업이 끝나야 애플리케이션이 준비 완료로 보고된다.
+ *
+ * 1. Hikari 풀을 minimumIdle 개까지 채운다. (동시에 빌려서 풀이 커넥션을 미리 만들게 한다)
+ * 2. 채운 커넥션마다 MEMBER 주요 SQL을 prepare 해서 DB 세션의 쿼리 캐시를 채운다.
+ * 3. SQLErrorCodeSQLExceptionTranslator를 초기화한다. (sql-error-codes.xml 로딩, DB 종류 확인)
+ * 4. 워밍업 전용 예약 회원 ID(WARMUP_MEMBER_ID)로 findById를 반복 호출해서 조회 경로를 JIT 컴파일시킨다.
+ *    조회만 하고 row를 만들지 않으므로 집계나 전체 조회 결과에 섞이지 않는다. 조회 결과 없음 예외는 무시한다.
+ *
+ * 실패해도 애플리케이션 시작을 막지 않고 로그만 남긴다.
+ * warmup.enabled=false 로 끌 수 있다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class DatabaseWarmup implements ApplicationRunner {
+
+    // 워밍업 예약 회원 ID - 실제 회원 ID로 사용하지 않는다.
+    public static final String WARMUP_MEMBER_ID = "_warmup_";
+    public static final int DEFAULT_ITERATIONS = 1000;
+
+    // MemberRepositoryV4_2 / V5와 같은 SQL (문자열이 같아야 세션 쿼리 캐시에 걸린다)
+    static final List<String> MEMBER_SQL = List.of(
+            "SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER WHERE MEMBER_ID = ?",
+            "INSERT INTO MEMBER(MEMBER_ID, MONEY) VALUES(?, ?)",
+            "UPDATE MEMBER SET MONEY = ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ?",
+            "UPDATE MEMBER SET MONEY = ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ? AND VERSION = ?",
+            "UPDATE MEMBER SET MONEY = MONEY + ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ? AND MONEY + ? >= 0",
+            "DELETE FROM MEMBER WHERE MEMBER_ID = ?");
+
+    private final DataSource dataSource;
+    private final MemberRepository memberRepository;
+    private final int iterations;
+    private final String warmupMemberId;
+
+    // DataSource가 여러 개면 @Primary를 사용하고, 결정할 수 없으면 워밍업하지 않는다.
+    @Autowired
+    public DatabaseWarmup(ObjectProvider<DataSource> dataSource, ObjectProvider<MemberRepository> memberRepository,
+                          @Value("${warmup.iterations:" + DEFAULT_ITERATIONS + "}") int iterations,
+                          @Value("${warmup.member-id:" + WARMUP_MEMBER_ID + "}") String warmupMemberId) {
+        this.dataSource = dataSource.getIfUnique();
+        this.memberRepository = this.dataSource == null ? null
+                : memberRepository.getIfUnique(() -> new MemberRepositoryV5(this.dataSource));
+        this.iterations = iterations;
+        this.warmupMemberId = warmupMemberId;
+    }
+
+    public DatabaseWarmup(DataSource dataSource, MemberRepository memberRepository, int iterations, String warmupMemberId) {
+        this.dataSource = dataSource;
+        this.memberRepository = memberRepository;
+        this.iterations = iterations;
+        this.warmupMemberId = warmupMemberId;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (dataSource == null) {
+            log.info("database warm-up skipped, no unique DataSource");
+            return;
+        }
+        warmUp();
+    }
+
+    /**
+     * @return 워밍업에 걸린 시간(ms)
+     */
+    public long warmUp() {
+        long start = System.nanoTime();
+        try {
+            int connections = fillPool();
+            initTranslator();
+            int calls = findById();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            log.info("database warm-up completed connections={}, statements={}, findById={}, elapsed={}ms",
+                    connections, MEMBER_SQL.size(), calls, elapsed);
+            return elapsed;
+        } catch (RuntimeException | SQLException e) {
+            log.warn("database warm-up failed, continuing startup", e);
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+
+    private int fillPool() throws SQLException {
+        int target = dataSource instanceof HikariDataSource hikari ? Math.max(1, hikari.getMinimumIdle()) : 1;
+
+        List<Connection> borrowed = new ArrayList<>(target);
+        try {
+            for (int i = 0; i < target; i++) {
+                Connection con = dataSource.getConnection();
+                borrowed.add(con);
+                prepareStatements(con);
+            }
+        } finally {
+            for (Connection con : borrowed) {
+                con.close();
+            }
+        }
+        return borrowed.size();
+    }
+
+    private void prepareStatements(Connection con) throws SQLException {
+        for (String sql : MEMBER_SQL) {
+            try (PreparedStatement ignored = con.prepareStatement(sql)) {
+                // prepare만 하고 실행하지 않는다.
+            }
+        }
+    }
+
+    private void initTranslator() {
+        SQLErrorCodeSQLExceptionTranslator translator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        // 예외 변환 경로의 클래스들도 미리 로딩한다.
+        translator.translate("warmup", null, new SQLException("warm-up", "23505", 23505));
+    }
+
+    private int findById() {
+        int calls = 0;
+        for (int i = 0; i < iterations; i++) {
+            try {
+                memberRepository.findById(warmupMemberId);
+            } catch (NoSuchElementException | EmptyResultDataAccessException e) {
+                // 없는 회원을 조회하므로 정상
+            }
+            calls++;
+        }
+        return calls;
+    }
+
+}
@@ -0,0 +1,297 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 커넥션 획득 대기 시간에 따라 Hikari 풀 크기를 조절하는 피드백 컨트롤러
+ *
+ * 주기(tick)마다 풀 상태를 샘플링해서 HikariConfigMXBean의 maximumPoolSize를 [minSize, maxSize] 안에서 바꾼다.
+ * minimumIdle은 maximumPoolSize보다 작게(최대 minSize) 둔다. Hikari는 minimumIdle < maximumPoolSize일 때만
+ * idleTimeout이 지난 유휴 커넥션을 닫으므로, 크기를 줄이면 남는 커넥션이 정리되면서 실제 커넥션 수도 줄어든다.
+ * - 커넥션을 기다리는 스레드가 있거나 평균 획득 대기 시간이 목표를 넘으면 (사용 중 + 대기) * headroom 까지 늘린다. 한 번에 최대 두 배까지만 늘린다.
+ *   단, SQL 지연 시간이 평소(기준선)보다 latencyTolerance 배 이상 느려졌다면 DB가 포화된 것이므로 늘리지 않는다.
+ * - 대기가 없고 필요한 크기가 현재보다 작은 상태가 shrinkAfterTicks 번 이어지면 차이의 절반씩 줄인다.
+ * 늘릴 때는 빠르게, 줄일 때는 천천히 움직여서 부하가 흔들려도 크기가 진동하지 않게 한다.
+ *
+ * 결정은 로그로 남기고 getDecisions()와 Micrometer(jdbc.pool.size.target, jdbc.pool.resize)로 확인할 수 있다.
+ */
+@Slf4j
+public class AdaptivePoolSizer implements MeterBinder, AutoCloseable {
+
+    private static final int MAX_DECISIONS = 100;
+
+    private final HikariConfigMXBean control;
+    private final PoolMetricsSource source;
+    private final int minSize;
+    private final int maxSize;
+    private final long targetAcquireWaitNanos;
+
+    private double headroom = 1.2;
+    private double latencyTolerance = 2.0;
+    private int shrinkAfterTicks = 3;
+
+    // 대기가 없을 때의 SQL 지연 시간 (EWMA)
+    private double baselineStatementNanos;
+    private int shrinkStreak;
+
+    private final Deque<Decision> decisions = new ArrayDeque<>();
+    private final LongAdder grows = new LongAdder();
+    private final LongAdder shrinks = new LongAdder();
+    private ScheduledExecutorService scheduler;
+
+    public AdaptivePoolSizer(HikariConfigMXBean control, PoolMetricsSource source, int minSize, int maxSize,
+                             Duration targetAcquireWait) {
+        if (minSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("invalid bounds min=" + minSize + ", max=" + maxSize);
+        }
+        this.control = control;
+        this.source = source;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetAcquireWaitNanos = targetAcquireWait.toNanos();
+    }
+
+    /**
+     * HikariDataSource를 InstrumentedDataSource로 감싸서 사용하는 경우
+     * 획득 대기 시간과 보유 시간(SQL 지연 시간 대용)은 InstrumentedDataSource에서, 사용 중/유휴/대기 수는 HikariPoolMXBean에서 읽는다.
+     */
+    public static AdaptivePoolSizer forHikari(HikariDataSource hikari, InstrumentedDataSource instrumented,
+                                              int minSize, int maxSize, Duration targetAcquireWait) {
+        return new AdaptivePoolSizer(hikari.getHikariConfigMXBean(), new HikariMetricsSource(hikari, instrumented),
+                minSize, maxSize, targetAcquireWait);
+    }
+
+    public void setHeadroom(double headroom) {
+        this.headroom = headroom;
+    }
+
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    public void setShrinkAfterTicks(int shrinkAfterTicks) {
+        this.shrinkAfterTicks = shrinkAfterTicks;
+    }
+
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "adaptive-pool-sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                log.warn("pool sizing tick failed", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * 한 번 샘플링하고 크기를 결정한다.
+     */
+    public synchronized Decision tick() {
+        PoolSample sample = source.sample();
+        int current = control.getMaximumPoolSize();
+        int demand = sample.active() + sample.waiting();
+        int desired = clamp((int) Math.ceil(demand * headroom));
+        boolean starving = sample.waiting() > 0 || sample.acquireWaitNanos() > targetAcquireWaitNanos;
+
+        int target = current;
+        String reason = "steady";
+        if (starving) {
+            shrinkStreak = 0;
+            boolean dbSlow = baselineStatementNanos > 0
+                    && sample.statementNanos() > baselineStatementNanos * latencyTolerance;
+            if (dbSlow) {
+                reason = "database latency above baseline, hold";
+            } else {
+                target = clamp(Math.max(current + 1, Math.min(desired, current * 2)));
+                reason = "acquire wait";
+            }
+        } else {
+            updateBaseline(sample.statementNanos());
+            if (desired < current) {
+                shrinkStreak++;
+                if (shrinkStreak >= shrinkAfterTicks) {
+                    shrinkStreak = 0;
+                    target = clamp(current - Math.max(1, (current - desired) / 2));
+                    reason = "low utilization";
+                } else {
+                    reason = "low utilization, waiting " + shrinkStreak + "/" + shrinkAfterTicks;
+                }
+            } else {
+                shrinkStreak = 0;
+            }
+        }
+
+        Decision decision = new Decision(System.currentTimeMillis(), sample, current, target, reason);
+        if (target != current) {
+            apply(current, target);
+            log.info("pool resize {} -> {} reason={}, sample={}", current, target, reason, sample);
+        } else {
+            log.debug("pool size {} kept reason={}, sample={}", current, reason, sample);
+        }
+        record(decision);
+        return decision;
+    }
+
+    private void apply(int current, int target) {
+        // maximumPoolSize는 상한이고, 실제 커넥션 수는 필요한 만큼 늘었다가 idleTimeout이 지나면 minimumIdle까지 줄어든다.
+        control.setMinimumIdle(Math.min(minSize, target - 1));
+        control.setMaximumPoolSize(target);
+        if (target > current) {
+            grows.increment();
+        } else {
+            shrinks.increment();
+        }
+    }
+
+    private void updateBaseline(long statementNanos) {
+        if (statementNanos <= 0) {
+            return;
+        }
+        baselineStatementNanos = baselineStatementNanos == 0
+                ? statementNanos
+                : baselineStatementNanos * 0.8 + statementNanos * 0.2;
+    }
+
+    private int clamp(int size) {
+        return Math.max(minSize, Math.min(maxSize, size));
+    }
+
+    private void record(Decision decision) {
+        decisions.addLast(decision);
+        if (decisions.size() > MAX_DECISIONS) {
+            decisions.removeFirst();
+        }
+    }
+
+    /**
+     * 최근 결정 (오래된 순, 최대 100개)
+     */
+    public synchronized List<Decision> getDecisions() {
+        return new ArrayList<>(decisions);
+    }
+
+    public int getTargetSize() {
+        return control.getMaximumPoolSize();
+    }
+
+    public long getGrowCount() {
+        return grows.sum();
+    }
+
+    public long getShrinkCount() {
+        return shrinks.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("jdbc.pool.size.target", control, HikariConfigMXBean::getMaximumPoolSize)
+                .description("maximumPoolSize chosen by the adaptive sizer")
+                .register(registry);
+        FunctionCounter.builder("jdbc.pool.resize", grows, LongAdder::sum).tag("direction", "up").register(registry);
+        FunctionCounter.builder("jdbc.pool.resize", shrinks, LongAdder::sum).tag("direction", "down").register(registry);
+    }
+
+    /**
+     * 컨트롤러 입력
+     */
+    public interface PoolMetricsSource {
+        PoolSample sample();
+    }
+
+    /**
+     * 한 주기 동안의 풀 상태
+     *
+     * @param acquireWaitNanos 이번 주기의 평균 커넥션 획득 대기 시간
+     * @param statementNanos   이번 주기의 평균 SQL 실행(커넥션 보유) 시간, 모르면 0
+     */
+    public record PoolSample(int active, int idle, int total, int waiting, long acquireWaitNanos, long statementNanos) {
+    }
+
+    public record Decision(long timestamp, PoolSample sample, int from, int to, String reason) {
+    }
+
+    /**
+     * HikariPoolMXBean + InstrumentedDataSource 기반 입력
+     * InstrumentedDataSource의 누적 값에서 직전 샘플과의 차이로 주기별 평균을 구한다.
+     */
+    static class HikariMetricsSource implements PoolMetricsSource {
+
+        private final HikariDataSource hikari;
+        private final InstrumentedDataSource instrumented;
+        private long lastAcquireCount;
+        private long lastAcquireNanos;
+        private long lastHoldCount;
+        private long lastHoldNanos;
+
+        HikariMetricsSource(HikariDataSource hikari, InstrumentedDataSource instrumented) {
+            this.hikari = hikari;
+            this.instrumented = instrumented;
+        }
+
+        @Override
+        public PoolSample sample() {
+            long acquireCount = 0;
+            long acquireNanos = 0;
+            long holdCount = 0;
+            long holdNanos = 0;
+            for (InstrumentedDataSource.ConnectionStats stats : instrumented.getStats().values()) {
+                acquireCount += stats.getAcquireTime().getCount();
+                acquireNanos += stats.getAcquireTime().getTotal(TimeUnit.NANOSECONDS);
+                holdCount += stats.getHoldTime().getCount();
+                holdNanos += stats.getHoldTime().getTotal(TimeUnit.NANOSECONDS);
+            }
+            long acquireWait = mean(acquireNanos - lastAcquireNanos, acquireCount - lastAcquireCount);
+            long statement = mean(holdNanos - lastHoldNanos, holdCount - lastHoldCount);
+            lastAcquireCount = acquireCount;
+            lastAcquireNanos = acquireNanos;
+            lastHoldCount = holdCount;
+            lastHoldNanos = holdNanos;
+
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            if (pool == null) {
+                // 아직 풀이 시작되지 않음
+                return new PoolSample(0, 0, 0, 0, acquireWait, statement);
+            }
+            return new PoolSample(pool.getActiveConnections(), pool.getIdleConnections(), pool.getTotalConnections(),
+                    pool.getThreadsAwaitingConnection(), acquireWait, statement);
+        }
+
+        private static long mean(long total, long count) {
+            return count <= 0 ? 0 : total / count;
+        }
+    }
+
+}
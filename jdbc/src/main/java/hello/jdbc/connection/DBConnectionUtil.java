@@ -3,17 +3,19 @@ package hello.jdbc.connection;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 @Slf4j
 public class DBConnectionUtil {
 
+    public static final int MIN_SIZE = 2;
+    public static final int MAX_SIZE = 10;
+
     public static Connection getConnection() {
         try {
-            // 데이터베이스에 연결하려면 JDBC가 제공하는 DriverManager의 getConnection() 사용.
-            // 라이브러리에 있는 데이터베이스 드라이버를 찾아서 해당 드라이버가 제공하는 커넥션을 반환.
-            Connection connection = DriverManager.getConnection(ConnectionConst.URL, ConnectionConst.USERNAME, ConnectionConst.PASSWORD);
+            // 매번 DriverManager로 새 커넥션(TCP 연결)을 만들지 않고 풀에서 빌린다.
+            // 커넥션을 close() 하면 실제로 닫히지 않고 풀에 반납된다.
+            Connection connection = PoolHolder.POOL.getConnection();
             log.info("get connection={}, class={}", connection, connection.getClass());
             return connection;
         } catch (SQLException e) {
@@ -21,4 +23,14 @@ public class DBConnectionUtil {
         }
     }
 
+    public static StripedConnectionPool getPool() {
+        return PoolHolder.POOL;
+    }
+
+    // 처음 getConnection()을 호출할 때 풀을 만든다.
+    private static class PoolHolder {
+        private static final StripedConnectionPool POOL = new StripedConnectionPool(
+                ConnectionConst.URL, ConnectionConst.USERNAME, ConnectionConst.PASSWORD, MIN_SIZE, MAX_SIZE);
+    }
+
 }
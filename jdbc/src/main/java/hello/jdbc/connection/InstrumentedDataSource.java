@@ -0,0 +1,262 @@
+package hello.jdbc.connection;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 커넥션 획득 대기 시간 / 보유 시간 / 대여 횟수를 호출자별로 기록하는 DataSource
+ *
+ * Repository나 DataSourceTransactionManager에 넘기는 DataSource를 감싸서 사용한다.
+ * 호출자는 스택에서 커넥션 관련 인프라(hello.jdbc.connection, 스프링, Hikari)를 제외한 첫 번째 hello.jdbc 클래스의 메서드다.
+ * 트랜잭션 매니저를 통하면 트랜잭션을 시작한 서비스 메서드가 호출자가 되고, 보유 시간은 곧 트랜잭션 시간이 된다.
+ *
+ * 호출자는 대여할 때마다 StackWalker로 위에서부터 최대 MAX_CALLER_DEPTH 프레임만 훑어서 찾는다. (스택 전체를 만들지 않는다)
+ * 이 비용도 줄여야 하면 callerSampleRate를 1.0보다 작게 지정한다. 그러면 나머지 대여는 "unsampled" 호출자로 기록되어
+ * 호출자별 값은 표본이 되고, 전체 합계만 모든 대여를 포함한다.
+ *
+ * getStats()로 직접 조회하거나, MeterRegistry에 bindTo() 하면 Micrometer Timer로도 기록된다.
+ * - jdbc.connection.acquire{caller}: 획득 대기 시간
+ * - jdbc.connection.hold{caller}: 획득 ~ close 까지 보유 시간
+ * - jdbc.connection.active: 현재 대여 중인 커넥션 수
+ */
+@Slf4j
+public class InstrumentedDataSource extends DelegatingDataSource implements MeterBinder {
+
+    public static final String UNSAMPLED_CALLER = "unsampled";
+    public static final double DEFAULT_CALLER_SAMPLE_RATE = 1.0;
+    // 트랜잭션 매니저, AOP 프록시, 커넥션 풀 프레임을 지나 업무 메서드에 닿기에 충분한 깊이
+    public static final int MAX_CALLER_DEPTH = 64;
+
+    private static final String UNKNOWN_CALLER = "unknown";
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private final Map<String, ConnectionStats> stats = new ConcurrentHashMap<>();
+    private final LongAdder active = new LongAdder();
+    private final double callerSampleRate;
+
+    private volatile MeterRegistry registry;
+
+    public InstrumentedDataSource(DataSource targetDataSource) {
+        this(targetDataSource, DEFAULT_CALLER_SAMPLE_RATE);
+    }
+
+    public InstrumentedDataSource(DataSource targetDataSource, double callerSampleRate) {
+        super(targetDataSource);
+        if (callerSampleRate < 0 || callerSampleRate > 1) {
+            throw new IllegalArgumentException("callerSampleRate must be between 0 and 1: " + callerSampleRate);
+        }
+        this.callerSampleRate = callerSampleRate;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection con = obtainTargetDataSource().getConnection();
+        return instrument(con, start);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        Connection con = obtainTargetDataSource().getConnection(username, password);
+        return instrument(con, start);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("jdbc.connection.active", active, LongAdder::sum)
+                .description("borrowed connections not yet closed")
+                .register(registry);
+        stats.values().forEach(connectionStats -> connectionStats.bindTo(registry));
+    }
+
+    /**
+     * 호출자별 통계 (읽기 전용 뷰)
+     */
+    public Map<String, ConnectionStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    public long getActiveCount() {
+        return active.sum();
+    }
+
+    private Connection instrument(Connection con, long start) {
+        long acquired = System.nanoTime();
+        boolean sampled = callerSampleRate >= 1
+                || callerSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < callerSampleRate;
+        String caller = sampled ? findCaller() : UNSAMPLED_CALLER;
+
+        ConnectionStats callerStats = stats.computeIfAbsent(caller, this::newStats);
+        callerStats.recordAcquire(acquired - start);
+        active.increment();
+
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new HoldTimeHandler(con, callerStats, acquired));
+    }
+
+    private ConnectionStats newStats(String caller) {
+        ConnectionStats connectionStats = new ConnectionStats(caller);
+        MeterRegistry current = registry;
+        if (current != null) {
+            connectionStats.bindTo(current);
+        }
+        return connectionStats;
+    }
+
+    static String findCaller() {
+        return STACK_WALKER.walk(frames -> frames
+                .limit(MAX_CALLER_DEPTH)
+                .filter(frame -> isApplicationFrame(frame.getClassName(), frame.getMethodName()))
+                .findFirst()
+                .map(frame -> simpleName(frame.getClassName()) + "." + frame.getMethodName())
+                .orElse(UNKNOWN_CALLER));
+    }
+
+    // Repository의 private getConnection() 헬퍼와 CGLIB 프록시는 건너뛰고 실제 업무 메서드를 호출자로 잡는다.
+    private static boolean isApplicationFrame(String className, String methodName) {
+        return className.startsWith("hello.jdbc.")
+                && !className.startsWith("hello.jdbc.connection.")
+                && !className.contains("$$")
+                && !methodName.equals("getConnection");
+    }
+
+    private static String simpleName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * 호출자 하나의 커넥션 사용 통계
+     */
+    public static class ConnectionStats {
+
+        private final String caller;
+        private final LongAdder borrows = new LongAdder();
+        private final LatencyHistogram acquireTime = new LatencyHistogram();
+        private final LatencyHistogram holdTime = new LatencyHistogram();
+
+        private volatile Timer acquireTimer;
+        private volatile Timer holdTimer;
+
+        ConnectionStats(String caller) {
+            this.caller = caller;
+        }
+
+        public String getCaller() {
+            return caller;
+        }
+
+        public long getBorrowCount() {
+            return borrows.sum();
+        }
+
+        public LatencyHistogram getAcquireTime() {
+            return acquireTime;
+        }
+
+        public LatencyHistogram getHoldTime() {
+            return holdTime;
+        }
+
+        void recordAcquire(long nanos) {
+            borrows.increment();
+            acquireTime.record(nanos);
+            Timer timer = acquireTimer;
+            if (timer != null) {
+                timer.record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        void recordHold(long nanos) {
+            holdTime.record(nanos);
+            Timer timer = holdTimer;
+            if (timer != null) {
+                timer.record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        void bindTo(MeterRegistry registry) {
+            acquireTimer = Timer.builder("jdbc.connection.acquire")
+                    .description("time waiting for a connection from the DataSource")
+                    .tag("caller", caller)
+                    .register(registry);
+            holdTimer = Timer.builder("jdbc.connection.hold")
+                    .description("time between getConnection() and close()")
+                    .tag("caller", caller)
+                    .register(registry);
+        }
+
+        @Override
+        public String toString() {
+            return caller + " borrows=" + getBorrowCount() + " acquire[" + acquireTime + "] hold[" + holdTime + "]";
+        }
+    }
+
+    /**
+     * close() 시점에 보유 시간을 기록하고 나머지 호출은 실제 커넥션에 위임한다.
+     */
+    private class HoldTimeHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final ConnectionStats callerStats;
+        private final long acquired;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        HoldTimeHandler(Connection target, ConnectionStats callerStats, long acquired) {
+            this.target = target;
+            this.callerStats = callerStats;
+            this.acquired = acquired;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Instrumented[" + target + "]";
+                case "close":
+                    // 중복 close는 한 번만 기록
+                    if (closed.compareAndSet(false, true)) {
+                        callerStats.recordHold(System.nanoTime() - acquired);
+                        active.decrement();
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+}
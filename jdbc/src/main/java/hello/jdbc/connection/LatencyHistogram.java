@@ -0,0 +1,90 @@
+package hello.jdbc.connection;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * lock-free 지연 시간 히스토그램
+ * 나노초 값을 2의 거듭제곱 구간(bucket)으로 나누어 센다. bucket i 는 [2^(i-1), 2^i) 나노초.
+ * 기록은 CAS/LongAdder 만 사용하므로 여러 스레드가 동시에 기록해도 락을 잡지 않는다.
+ * 백분위 값은 bucket의 상한으로 근사한다. (최대 2배 오차)
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotal(TimeUnit unit) {
+        return unit.convert(totalNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMax(TimeUnit unit) {
+        return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public double getMean(TimeUnit unit) {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) unit.convert(totalNanos.sum(), TimeUnit.NANOSECONDS) / n;
+    }
+
+    /**
+     * @param percentile 0.0 ~ 1.0 (예: 0.99)
+     */
+    public long getPercentile(double percentile, TimeUnit unit) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return unit.convert(Math.min(upperBound(i), maxNanos.get()), TimeUnit.NANOSECONDS);
+            }
+        }
+        return getMax(unit);
+    }
+
+    private static int bucketOf(long nanos) {
+        return 64 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount()
+                + ", mean=" + (long) getMean(TimeUnit.MICROSECONDS) + "us"
+                + ", p50=" + getPercentile(0.5, TimeUnit.MICROSECONDS) + "us"
+                + ", p99=" + getPercentile(0.99, TimeUnit.MICROSECONDS) + "us"
+                + ", max=" + getMax(TimeUnit.MICROSECONDS) + "us";
+    }
+
+}
@@ -0,0 +1,256 @@
+package hello.jdbc.connection;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 커넥션 누수 추적 DataSource
+ *
+ * 빌려준 커넥션을 close() 될 때까지 열린 커넥션 목록에 (빌린 스레드, 호출자, 획득 시각과 함께) 올려두고,
+ * leakThreshold 보다 오래 반납되지 않은 커넥션을 누수 의심으로 경고한다.
+ * DataSourceUtils.getConnection / releaseConnection 짝이 맞지 않거나 close()를 빠뜨린 코드를 찾는 용도다.
+ *
+ * 호출자(트랜잭션을 시작한 서비스 메서드 또는 Repository 메서드)는 모든 커넥션에 기록한다. (InstrumentedDataSource와 같은 제한된 StackWalker 탐색)
+ * 전체 획득 위치 스택은 비용이 크므로 stackSampleRate 비율로만 남긴다. (1.0이면 모두, 0이면 남기지 않음)
+ * dump()로 현재 열린 커넥션 목록을 오래된 순으로 출력할 수 있다.
+ */
+@Slf4j
+public class LeakTrackingDataSource extends DelegatingDataSource implements MeterBinder, AutoCloseable {
+
+    public static final Duration DEFAULT_LEAK_THRESHOLD = Duration.ofSeconds(30);
+    public static final double DEFAULT_STACK_SAMPLE_RATE = 0.01;
+
+    private final long leakThresholdNanos;
+    private final double stackSampleRate;
+
+    private final Map<Long, OpenConnection> open = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder suspected = new LongAdder();
+    private final LatencyHistogram holdTime = new LatencyHistogram();
+    private final ScheduledExecutorService checker;
+
+    public LeakTrackingDataSource(DataSource targetDataSource) {
+        this(targetDataSource, DEFAULT_LEAK_THRESHOLD, DEFAULT_STACK_SAMPLE_RATE);
+    }
+
+    public LeakTrackingDataSource(DataSource targetDataSource, Duration leakThreshold, double stackSampleRate) {
+        super(targetDataSource);
+        if (stackSampleRate < 0 || stackSampleRate > 1) {
+            throw new IllegalArgumentException("stackSampleRate must be between 0 and 1: " + stackSampleRate);
+        }
+        this.leakThresholdNanos = leakThreshold.toNanos();
+        this.stackSampleRate = stackSampleRate;
+
+        // 임계값의 절반 간격으로 검사하면 최대 1.5배 시간 안에 발견된다.
+        long period = Math.max(1, leakThreshold.toMillis() / 2);
+        this.checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-leak-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.checker.scheduleAtFixedRate(this::checkLeaks, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return track(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return track(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection track(Connection con) {
+        Throwable stack = stackSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < stackSampleRate
+                ? new Throwable("connection acquired here")
+                : null;
+        String operation = InstrumentedDataSource.findCaller();
+        OpenConnection entry = new OpenConnection(sequence.incrementAndGet(), Thread.currentThread().getName(),
+                operation, System.nanoTime(), System.currentTimeMillis(), stack);
+        open.put(entry.id, entry);
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new TrackingHandler(con, entry));
+    }
+
+    /**
+     * leakThreshold를 넘긴 커넥션을 찾아 경고한다. 같은 커넥션은 한 번만 경고한다.
+     *
+     * @return 이번 검사에서 새로 발견한 누수 의심 커넥션 수
+     */
+    public synchronized int checkLeaks() {
+        long now = System.nanoTime();
+        int found = 0;
+        for (OpenConnection entry : open.values()) {
+            if (!entry.flagged && now - entry.acquiredNanos > leakThresholdNanos) {
+                entry.flagged = true;
+                suspected.increment();
+                found++;
+                log.warn("connection leak suspected id={}, thread={}, operation={}, held={}ms",
+                        entry.id, entry.thread, entry.operation, TimeUnit.NANOSECONDS.toMillis(now - entry.acquiredNanos),
+                        entry.stack);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 현재 열린 커넥션 (오래된 순)
+     */
+    public List<OpenConnectionInfo> getOpenConnections() {
+        long now = System.nanoTime();
+        List<OpenConnectionInfo> result = new ArrayList<>();
+        for (OpenConnection entry : open.values()) {
+            result.add(new OpenConnectionInfo(entry.id, entry.thread, entry.operation, entry.acquiredAtMillis,
+                    Duration.ofNanos(now - entry.acquiredNanos), entry.flagged, entry.stack));
+        }
+        result.sort(Comparator.comparing(OpenConnectionInfo::held).reversed());
+        return result;
+    }
+
+    /**
+     * 열린 커넥션 목록을 사람이 읽을 수 있는 표로 만든다. 스택이 샘플링된 커넥션은 획득 위치도 함께 출력한다.
+     */
+    public String dump() {
+        List<OpenConnectionInfo> connections = getOpenConnections();
+        StringBuilder sb = new StringBuilder();
+        sb.append("open connections=").append(connections.size()).append(", suspected leaks=").append(getSuspectedLeakCount()).append('\n');
+        for (OpenConnectionInfo info : connections) {
+            sb.append(String.format("#%d held=%dms thread=%s operation=%s%s%n", info.id(), info.held().toMillis(),
+                    info.thread(), info.operation(), info.suspected() ? " [LEAK?]" : ""));
+            if (info.stack() != null) {
+                for (StackTraceElement frame : info.stack().getStackTrace()) {
+                    sb.append("    at ").append(frame).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    public int getOpenCount() {
+        return open.size();
+    }
+
+    public long getSuspectedLeakCount() {
+        return suspected.sum();
+    }
+
+    public LatencyHistogram getHoldTime() {
+        return holdTime;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("jdbc.connection.open", open, Map::size)
+                .description("connections borrowed and not yet closed")
+                .register(registry);
+        FunctionCounter.builder("jdbc.connection.leak.suspected", suspected, LongAdder::sum)
+                .description("connections held longer than the leak threshold")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        checker.shutdownNow();
+    }
+
+    /**
+     * 열린 커넥션 한 건의 스냅샷
+     *
+     * @param stack     샘플링되지 않았으면 null
+     */
+    public record OpenConnectionInfo(long id, String thread, String operation, long acquiredAtMillis, Duration held,
+                                     boolean suspected, Throwable stack) {
+    }
+
+    private static class OpenConnection {
+
+        private final long id;
+        private final String thread;
+        private final String operation;
+        private final long acquiredNanos;
+        private final long acquiredAtMillis;
+        private final Throwable stack;
+        private volatile boolean flagged;
+
+        OpenConnection(long id, String thread, String operation, long acquiredNanos, long acquiredAtMillis, Throwable stack) {
+            this.id = id;
+            this.thread = thread;
+            this.operation = operation;
+            this.acquiredNanos = acquiredNanos;
+            this.acquiredAtMillis = acquiredAtMillis;
+            this.stack = stack;
+        }
+    }
+
+    /**
+     * close() 시점에 열린 커넥션 목록에서 제거하고 나머지 호출은 실제 커넥션에 위임한다.
+     */
+    private class TrackingHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final OpenConnection entry;
+
+        TrackingHandler(Connection target, OpenConnection entry) {
+            this.target = target;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Tracked#" + entry.id + "[" + target + "]";
+                case "close":
+                    // 중복 close는 한 번만 기록
+                    if (open.remove(entry.id) != null) {
+                        long held = System.nanoTime() - entry.acquiredNanos;
+                        holdTime.record(held);
+                        if (entry.flagged) {
+                            log.info("suspected leak released id={}, operation={}, held={}ms",
+                                    entry.id, entry.operation, TimeUnit.NANOSECONDS.toMillis(held));
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+}
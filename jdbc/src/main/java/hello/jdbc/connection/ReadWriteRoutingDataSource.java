@@ -0,0 +1,58 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 읽기/쓰기 분리
+ * @Transactional(readOnly = true) 트랜잭션은 replica로, 나머지는 primary로 보낸다.
+ *
+ * 주의! DataSourceTransactionManager는 readOnly 여부를 트랜잭션 동기화 매니저에 등록하기 전에 커넥션을 먼저 얻는다.
+ * 그래서 반드시 create()로 LazyConnectionDataSourceProxy에 감싸서, 첫 SQL 실행 시점에 실제 커넥션을 고르도록 해야 한다.
+ * Repository(V3, V4_x, V5)와 트랜잭션 매니저에는 create()가 돌려준 DataSource를 그대로 넘기면 된다.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private final LongAdder primaryCount = new LongAdder();
+    private final LongAdder replicaCount = new LongAdder();
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica) {
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    public static DataSource create(DataSource primary, DataSource replica) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica));
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            replicaCount.increment();
+            return Route.REPLICA;
+        }
+        primaryCount.increment();
+        return Route.PRIMARY;
+    }
+
+    public long getPrimaryCount() {
+        return primaryCount.sum();
+    }
+
+    public long getReplicaCount() {
+        return replicaCount.sum();
+    }
+
+}
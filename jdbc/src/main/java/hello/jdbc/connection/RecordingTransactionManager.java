@@ -0,0 +1,409 @@
+package hello.jdbc.connection;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.InfrastructureProxy;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 트랜잭션 단위로 시간과 자원 사용량을 기록하는 DataSourceTransactionManager
+ *
+ * 트랜잭션마다 다음을 기록하고 서비스 메서드별로 모은다.
+ * - 시작(doBegin) ~ 커밋/롤백 완료까지 걸린 시간
+ * - 커넥션 보유 시간 (획득 ~ 반납)
+ * - 실행한 SQL 수, 변경된 row 수 (executeUpdate / executeBatch)
+ * - 결과 (commit / rollback)
+ *
+ * 트랜잭션 매니저가 얻는 커넥션을 감싸서 Statement 실행을 세고, 트랜잭션 동기화(afterCompletion)로 결과를 받는다.
+ * 감싼 DataSource는 InfrastructureProxy라서 트랜잭션 리소스는 원래 DataSource를 키로 바인딩된다.
+ * 따라서 Repository는 원래 DataSource를 그대로 써도 DataSourceUtils로 같은 (감싼) 커넥션을 받는다.
+ *
+ * 메서드 이름은 트랜잭션 정의의 이름(@Transactional이면 클래스.메서드)을 쓰고, 이름이 없으면
+ * (TransactionTemplate, getTransaction 직접 호출) 스택에서 트랜잭션을 시작한 hello.jdbc 메서드를 찾는다.
+ */
+@Slf4j
+public class RecordingTransactionManager extends DataSourceTransactionManager implements MeterBinder {
+
+    public static final String COMMIT = "commit";
+    public static final String ROLLBACK = "rollback";
+    public static final String UNKNOWN = "unknown";
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    // doBegin에서 만든 기록을 같은 스레드의 커넥션 획득/prepareSynchronization에 넘겨준다.
+    private static final ThreadLocal<TransactionRecord> BEGINNING = new ThreadLocal<>();
+
+    private final Map<String, TransactionStats> stats = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public RecordingTransactionManager(DataSource dataSource) {
+        super(new RecordingDataSource(dataSource));
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        TransactionRecord record = new TransactionRecord(methodName(definition), System.nanoTime());
+        BEGINNING.set(record);
+        try {
+            super.doBegin(transaction, definition);
+        } catch (RuntimeException e) {
+            BEGINNING.remove();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void prepareSynchronization(DefaultTransactionStatus status, TransactionDefinition definition) {
+        super.prepareSynchronization(status, definition);
+        TransactionRecord record = BEGINNING.get();
+        BEGINNING.remove();
+        if (record != null && status.isNewSynchronization()) {
+            TransactionSynchronizationManager.registerSynchronization(record);
+        }
+    }
+
+    /**
+     * 서비스 메서드별 통계 (읽기 전용 뷰)
+     */
+    public Map<String, TransactionStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        stats.values().forEach(methodStats -> methodStats.bindTo(registry));
+    }
+
+    // 커넥션이 반납되면(= doCleanupAfterCompletion) 트랜잭션 기록이 완성된다.
+    private void publish(TransactionRecord record) {
+        TransactionStats methodStats = stats.computeIfAbsent(record.method, this::newStats);
+        methodStats.record(record);
+        log.debug("tx method={}, outcome={}, duration={}us, hold={}us, statements={}, rows={}", record.method, record.outcome,
+                TimeUnit.NANOSECONDS.toMicros(record.durationNanos), TimeUnit.NANOSECONDS.toMicros(record.holdNanos),
+                record.statements.get(), record.rows.get());
+    }
+
+    private TransactionStats newStats(String method) {
+        TransactionStats methodStats = new TransactionStats(method);
+        MeterRegistry current = registry;
+        if (current != null) {
+            methodStats.bindTo(current);
+        }
+        return methodStats;
+    }
+
+    private static String methodName(TransactionDefinition definition) {
+        String name = definition.getName();
+        if (name != null) {
+            // hello.jdbc.service.MemberServiceV3_3.accountTransfer -> MemberServiceV3_3.accountTransfer
+            int method = name.lastIndexOf('.');
+            int type = method > 0 ? name.lastIndexOf('.', method - 1) : -1;
+            return name.substring(type + 1);
+        }
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith("hello.jdbc.")
+                        && !frame.getClassName().startsWith("hello.jdbc.connection.")
+                        && !frame.getClassName().contains("$$")
+                        && !frame.getClassName().contains("$Lambda"))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1) + "." + frame.getMethodName())
+                .orElse(UNKNOWN));
+    }
+
+    /**
+     * 트랜잭션 하나의 기록
+     */
+    private class TransactionRecord implements TransactionSynchronization {
+
+        private final String method;
+        private final long begin;
+        private final AtomicLong statements = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private volatile String outcome = UNKNOWN;
+        private long durationNanos;
+        private long holdNanos;
+
+        TransactionRecord(String method, long begin) {
+            this.method = method;
+            this.begin = begin;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            durationNanos = System.nanoTime() - begin;
+            outcome = switch (status) {
+                case STATUS_COMMITTED -> COMMIT;
+                case STATUS_ROLLED_BACK -> ROLLBACK;
+                default -> UNKNOWN;
+            };
+        }
+
+        void released(long holdNanos) {
+            this.holdNanos = holdNanos;
+            if (durationNanos == 0) {
+                // 동기화가 꺼져 있으면 afterCompletion이 호출되지 않는다.
+                durationNanos = System.nanoTime() - begin;
+            }
+            publish(this);
+        }
+    }
+
+    /**
+     * 메서드 하나의 트랜잭션 통계
+     */
+    public static class TransactionStats {
+
+        private final String method;
+        private final LongAdder commits = new LongAdder();
+        private final LongAdder rollbacks = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final AtomicLong maxStatements = new AtomicLong();
+        private final LatencyHistogram duration = new LatencyHistogram();
+        private final LatencyHistogram holdTime = new LatencyHistogram();
+
+        private volatile MeterRegistry registry;
+
+        TransactionStats(String method) {
+            this.method = method;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public long getCommitCount() {
+            return commits.sum();
+        }
+
+        public long getRollbackCount() {
+            return rollbacks.sum();
+        }
+
+        public long getStatementCount() {
+            return statements.sum();
+        }
+
+        public long getMaxStatements() {
+            return maxStatements.get();
+        }
+
+        public long getRowsAffected() {
+            return rows.sum();
+        }
+
+        public LatencyHistogram getDuration() {
+            return duration;
+        }
+
+        public LatencyHistogram getHoldTime() {
+            return holdTime;
+        }
+
+        void record(TransactionRecord record) {
+            if (COMMIT.equals(record.outcome)) {
+                commits.increment();
+            } else if (ROLLBACK.equals(record.outcome)) {
+                rollbacks.increment();
+            }
+            long statementCount = record.statements.get();
+            statements.add(statementCount);
+            maxStatements.accumulateAndGet(statementCount, Math::max);
+            rows.add(record.rows.get());
+            duration.record(record.durationNanos);
+            holdTime.record(record.holdNanos);
+
+            MeterRegistry current = registry;
+            if (current != null) {
+                Timer.builder("tx.duration").tag("method", method).tag("outcome", record.outcome)
+                        .register(current).record(record.durationNanos, TimeUnit.NANOSECONDS);
+                Timer.builder("tx.connection.hold").tag("method", method)
+                        .register(current).record(record.holdNanos, TimeUnit.NANOSECONDS);
+                DistributionSummary.builder("tx.statements").tag("method", method)
+                        .register(current).record(statementCount);
+                DistributionSummary.builder("tx.rows").tag("method", method)
+                        .register(current).record(record.rows.get());
+            }
+        }
+
+        void bindTo(MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public String toString() {
+            return method + " commit=" + getCommitCount() + " rollback=" + getRollbackCount()
+                    + " statements=" + getStatementCount() + " rows=" + getRowsAffected()
+                    + " duration[" + duration + "] hold[" + holdTime + "]";
+        }
+    }
+
+    /**
+     * 트랜잭션 매니저가 얻는 커넥션을 감싸는 DataSource
+     * InfrastructureProxy이므로 트랜잭션 리소스 키는 원래 DataSource가 된다.
+     */
+    private static class RecordingDataSource extends DelegatingDataSource implements InfrastructureProxy {
+
+        RecordingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Object getWrappedObject() {
+            return obtainTargetDataSource();
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return RecordingConnection.wrap(obtainTargetDataSource().getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return RecordingConnection.wrap(obtainTargetDataSource().getConnection(username, password));
+        }
+    }
+
+    /**
+     * Statement 실행 수/변경 row 수를 세고, close() 시점에 보유 시간을 넘긴다.
+     */
+    private static class RecordingConnection implements InvocationHandler {
+
+        private final Connection target;
+        private final TransactionRecord record;
+        private final long acquired = System.nanoTime();
+        private boolean closed;
+
+        private RecordingConnection(Connection target, TransactionRecord record) {
+            this.target = target;
+            this.record = record;
+        }
+
+        static Connection wrap(Connection con) {
+            // RecordingTransactionManager.doBegin 안에서 얻은 커넥션만 기록한다.
+            TransactionRecord record = BEGINNING.get();
+            if (record == null) {
+                return con;
+            }
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new RecordingConnection(con, record));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Recording[" + target + "]";
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        record.released(System.nanoTime() - acquired);
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            Object result = invokeTarget(target, method, args);
+            if (result instanceof Statement stmt && Statement.class.isAssignableFrom(method.getReturnType())) {
+                return Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[]{statementType(method.getReturnType())}, new RecordingStatement(stmt, record));
+            }
+            return result;
+        }
+
+        private static Class<?> statementType(Class<?> returnType) {
+            if (CallableStatement.class.isAssignableFrom(returnType)) {
+                return CallableStatement.class;
+            }
+            if (PreparedStatement.class.isAssignableFrom(returnType)) {
+                return PreparedStatement.class;
+            }
+            return Statement.class;
+        }
+    }
+
+    private static class RecordingStatement implements InvocationHandler {
+
+        private final Statement target;
+        private final TransactionRecord record;
+
+        RecordingStatement(Statement target, TransactionRecord record) {
+            this.target = target;
+            this.record = record;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Recording[" + target + "]";
+                default:
+                    break;
+            }
+
+            Object result = invokeTarget(target, method, args);
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                record.statements.incrementAndGet();
+                if (result instanceof Integer count && count > 0) {
+                    record.rows.addAndGet(count);
+                } else if (result instanceof Long count && count > 0) {
+                    record.rows.addAndGet(count);
+                } else if (result instanceof int[] counts) {
+                    for (int count : counts) {
+                        record.rows.addAndGet(Math.max(count, 0));
+                    }
+                } else if (result instanceof long[] counts) {
+                    for (long count : counts) {
+                        record.rows.addAndGet(Math.max(count, 0));
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+}
@@ -0,0 +1,422 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DriverManager 기반 경량 커넥션 풀
+ *
+ * 커넥션 대여는 락 없이 CAS로만 처리한다.
+ * 1. 스레드별 슬롯: 이 스레드가 마지막으로 반납한 커넥션을 먼저 시도한다. (대부분 경합 없이 바로 성공)
+ * 2. 공유 bag: 전체 커넥션 목록(CopyOnWriteArrayList)을 훑으면서 유휴 커넥션의 상태를 CAS로 가져온다.
+ * 3. maxSize 미만이면 새 커넥션을 만든다.
+ * 4. 모두 사용 중이면 반납되는 커넥션을 handoff 큐에서 connectionTimeout 까지 기다린다.
+ *
+ * 오래 쉬고 있던 커넥션(validateAfterIdle)은 빌려주기 전에 isValid()로 확인하고,
+ * maxLifetime이 지난 커넥션은 반납/대여 시점에 폐기한다. 폐기로 minSize 아래로 내려가면 백그라운드에서 다시 채운다.
+ * 사용자가 받는 커넥션은 프록시이고, close() 하면 autoCommit/readOnly 등을 되돌린 뒤 풀에 반납된다.
+ */
+@Slf4j
+public class StripedConnectionPool extends AbstractDataSource implements AutoCloseable {
+
+    public static final Duration DEFAULT_MAX_LIFETIME = Duration.ofMinutes(30);
+    public static final Duration DEFAULT_VALIDATE_AFTER_IDLE = Duration.ofMillis(500);
+    public static final Duration DEFAULT_CONNECTION_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final int NOT_IN_USE = 0;
+    private static final int IN_USE = 1;
+    private static final int REMOVED = -1;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long maxLifetimeNanos;
+    private final long validateAfterIdleNanos;
+    private final long connectionTimeoutNanos;
+
+    private final CopyOnWriteArrayList<PoolEntry> entries = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<PoolEntry> affinity = new ThreadLocal<>();
+    private final LinkedTransferQueue<PoolEntry> handoff = new LinkedTransferQueue<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ExecutorService filler;
+    private volatile boolean closed;
+
+    private final LongAdder affinityHits = new LongAdder();
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder handoffs = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder retired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public StripedConnectionPool(String url, String username, String password, int minSize, int maxSize) {
+        this(url, username, password, minSize, maxSize, DEFAULT_MAX_LIFETIME, DEFAULT_VALIDATE_AFTER_IDLE, DEFAULT_CONNECTION_TIMEOUT);
+    }
+
+    public StripedConnectionPool(String url, String username, String password, int minSize, int maxSize,
+                                 Duration maxLifetime, Duration validateAfterIdle, Duration connectionTimeout) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("invalid pool size min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxLifetimeNanos = maxLifetime.toNanos();
+        this.validateAfterIdleNanos = validateAfterIdle.toNanos();
+        this.connectionTimeoutNanos = connectionTimeout.toNanos();
+        this.filler = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "striped-pool-filler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        fillToMinimum();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("pool is closed");
+        }
+        long deadline = System.nanoTime() + connectionTimeoutNanos;
+
+        // 1. 스레드별 슬롯
+        PoolEntry entry = affinity.get();
+        if (entry != null && entry.state.compareAndSet(NOT_IN_USE, IN_USE)) {
+            if (usable(entry)) {
+                affinityHits.increment();
+                return entry.borrow();
+            }
+        }
+
+        while (true) {
+            // 2. 공유 bag
+            for (PoolEntry candidate : entries) {
+                if (candidate.state.compareAndSet(NOT_IN_USE, IN_USE)) {
+                    if (usable(candidate)) {
+                        sharedHits.increment();
+                        affinity.set(candidate);
+                        return candidate.borrow();
+                    }
+                }
+            }
+
+            // 3. 새 커넥션
+            PoolEntry fresh = tryCreate(IN_USE);
+            if (fresh != null) {
+                affinity.set(fresh);
+                return fresh.borrow();
+            }
+
+            // 4. 반납 대기
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                timeouts.increment();
+                throw new SQLTimeoutException("connection not available within "
+                        + TimeUnit.NANOSECONDS.toMillis(connectionTimeoutNanos) + "ms, total=" + total.get() + ", max=" + maxSize);
+            }
+            waiters.incrementAndGet();
+            try {
+                // 반납하는 쪽이 대기자를 놓치더라도 짧게 깨어나서 bag을 다시 훑는다.
+                PoolEntry handed = handoff.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(10)), TimeUnit.NANOSECONDS);
+                if (handed != null) {
+                    // handoff로 받은 커넥션은 이미 IN_USE 상태다.
+                    if (usable(handed)) {
+                        handoffs.increment();
+                        affinity.set(handed);
+                        return handed.borrow();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("interrupted while waiting for a connection", e);
+            } finally {
+                waiters.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLException("StripedConnectionPool does not support per-call credentials");
+    }
+
+    // IN_USE 상태로 가져온 커넥션을 빌려줘도 되는지 확인하고, 아니면 폐기한다.
+    private boolean usable(PoolEntry entry) {
+        long now = System.nanoTime();
+        if (now - entry.createdAt > maxLifetimeNanos) {
+            retire(entry, "max lifetime");
+            return false;
+        }
+        if (now - entry.lastReleased > validateAfterIdleNanos) {
+            try {
+                if (!entry.connection.isValid(1)) {
+                    retire(entry, "validation failed");
+                    return false;
+                }
+            } catch (SQLException e) {
+                retire(entry, "validation failed");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private PoolEntry tryCreate(int initialState) throws SQLException {
+        // 먼저 자리를 예약한 뒤 만든다. (maxSize 초과 방지)
+        int current;
+        do {
+            current = total.get();
+            if (current >= maxSize || closed) {
+                return null;
+            }
+        } while (!total.compareAndSet(current, current + 1));
+
+        try {
+            Connection con = DriverManager.getConnection(url, username, password);
+            PoolEntry entry = new PoolEntry(con, initialState);
+            entries.add(entry);
+            created.increment();
+            log.debug("pool connection created total={}", total.get());
+            return entry;
+        } catch (SQLException | RuntimeException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void release(PoolEntry entry) {
+        if (closed || System.nanoTime() - entry.createdAt > maxLifetimeNanos) {
+            retire(entry, closed ? "pool closed" : "max lifetime");
+            return;
+        }
+        entry.lastReleased = System.nanoTime();
+        affinity.set(entry);
+        // 기다리는 스레드가 있으면 상태를 바꾸지 않고(IN_USE) 바로 넘긴다.
+        if (waiters.get() > 0 && handoff.tryTransfer(entry)) {
+            return;
+        }
+        entry.state.set(NOT_IN_USE);
+    }
+
+    private void retire(PoolEntry entry, String reason) {
+        entry.state.set(REMOVED);
+        if (entries.remove(entry)) {
+            total.decrementAndGet();
+            retired.increment();
+            log.debug("pool connection retired reason={}, total={}", reason, total.get());
+            try {
+                entry.connection.close();
+            } catch (SQLException e) {
+                log.debug("close retired connection failed", e);
+            }
+            if (!closed && total.get() < minSize) {
+                filler.execute(this::fillToMinimum);
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        try {
+            while (total.get() < minSize && tryCreate(NOT_IN_USE) != null) {
+                // tryCreate가 목록에 추가한다.
+            }
+        } catch (SQLException e) {
+            log.warn("pool fill failed total={}, min={}", total.get(), minSize, e);
+        }
+    }
+
+    public int getTotalConnections() {
+        return total.get();
+    }
+
+    public int getIdleConnections() {
+        int idle = 0;
+        for (PoolEntry entry : entries) {
+            if (entry.state.get() == NOT_IN_USE) {
+                idle++;
+            }
+        }
+        return idle;
+    }
+
+    public int getWaitingThreads() {
+        return waiters.get();
+    }
+
+    public long getAffinityHitCount() {
+        return affinityHits.sum();
+    }
+
+    public long getSharedHitCount() {
+        return sharedHits.sum();
+    }
+
+    public long getHandoffCount() {
+        return handoffs.sum();
+    }
+
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    public long getRetiredCount() {
+        return retired.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * 유휴 커넥션을 닫는다. 사용 중인 커넥션은 반납될 때 닫힌다.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        filler.shutdownNow();
+        for (PoolEntry entry : entries) {
+            if (entry.state.compareAndSet(NOT_IN_USE, REMOVED)) {
+                retire(entry, "pool closed");
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StripedConnectionPool[total=" + getTotalConnections() + ", idle=" + getIdleConnections()
+                + ", waiting=" + getWaitingThreads() + ", affinityHits=" + getAffinityHitCount()
+                + ", sharedHits=" + getSharedHitCount() + ", handoffs=" + getHandoffCount()
+                + ", created=" + getCreatedCount() + ", retired=" + getRetiredCount() + "]";
+    }
+
+    /**
+     * 풀에 있는 물리 커넥션 하나
+     */
+    private class PoolEntry {
+
+        private final Connection connection;
+        private final AtomicInteger state;
+        private final long createdAt = System.nanoTime();
+        private volatile long lastReleased = createdAt;
+
+        PoolEntry(Connection connection, int initialState) {
+            this.connection = connection;
+            this.state = new AtomicInteger(initialState);
+        }
+
+        Connection borrow() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new PooledConnection(this));
+        }
+    }
+
+    /**
+     * 사용자에게 빌려준 커넥션. close() 하면 상태를 초기화하고 풀에 반납한다.
+     */
+    private class PooledConnection implements InvocationHandler {
+
+        private final PoolEntry entry;
+        private boolean closed;
+        private boolean autoCommitChanged;
+        private boolean readOnlyChanged;
+        private boolean isolationChanged;
+        private int isolation;
+
+        PooledConnection(PoolEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + entry.connection + "]";
+                case "isClosed":
+                    return closed || entry.connection.isClosed();
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        if (reset()) {
+                            release(entry);
+                        } else {
+                            retire(entry, "reset failed");
+                        }
+                    }
+                    return null;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("connection is closed");
+            }
+
+            switch (method.getName()) {
+                case "setAutoCommit" -> autoCommitChanged = true;
+                case "setReadOnly" -> readOnlyChanged = true;
+                case "setTransactionIsolation" -> {
+                    if (!isolationChanged) {
+                        isolation = entry.connection.getTransactionIsolation();
+                        isolationChanged = true;
+                    }
+                }
+                default -> {
+                }
+            }
+
+            try {
+                return method.invoke(entry.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        // 다음 사용자가 이전 사용자의 트랜잭션이나 설정을 물려받지 않도록 되돌린다.
+        private boolean reset() {
+            Connection con = entry.connection;
+            try {
+                if (autoCommitChanged && !con.getAutoCommit()) {
+                    con.rollback();
+                    con.setAutoCommit(true);
+                }
+                if (readOnlyChanged) {
+                    con.setReadOnly(false);
+                }
+                if (isolationChanged) {
+                    con.setTransactionIsolation(isolation);
+                }
+                return true;
+            } catch (SQLException e) {
+                // 상태를 되돌릴 수 없는 커넥션은 풀에 돌려놓지 않는다.
+                log.info("pool connection reset failed", e);
+                return false;
+            }
+        }
+    }
+
+}
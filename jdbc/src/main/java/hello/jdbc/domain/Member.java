@@ -7,6 +7,8 @@ public class Member {
 
     private String memberId;
     private int money;
+    // 낙관적 락 버전. 수정될 때마다 DB에서 1씩 증가한다.
+    private long version;
 
     public Member() {
     }
@@ -16,4 +18,10 @@ public class Member {
         this.money = money;
     }
 
+    public Member(String memberId, int money, long version) {
+        this.memberId = memberId;
+        this.money = money;
+        this.version = version;
+    }
+
 }
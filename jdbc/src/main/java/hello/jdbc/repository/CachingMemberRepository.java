@@ -0,0 +1,357 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * findById 결과를 캐시하는 MemberRepository 데코레이터
+ * 크기 제한(LRU) + 선택적 TTL, update/delete 시 무효화
+ *
+ * 트랜잭션 동기화가 활성화되어 있으면 트랜잭션 안에서 읽은 값은 커밋 이후에만 캐시에 반영한다.
+ * 트랜잭션 안에서 수정한 회원은 트랜잭션 동안 캐시를 거치지 않고, 커밋/롤백 이후 다시 무효화한다.
+ *
+ * 무효화할 때마다 순번을 매겨서, DB에서 읽기 시작한 뒤 같은 회원이 무효화되었다면 읽은 값은 오래된 값이므로 캐시에 올리지 않는다.
+ * (트랜잭션 안에서 읽은 값을 커밋 시점에 올리는 경우도 마찬가지)
+ */
+@Slf4j
+public class CachingMemberRepository implements MemberRepository {
+
+    private final MemberRepository target;
+    private final int maximumSize;
+    private final long ttlNanos;
+
+    private final Map<String, CacheEntry> cache;
+
+    // 최근 무효화된 회원 -> 무효화 순번 (최대 maximumSize 개, 밀려난 항목 중 가장 큰 순번은 forgottenSeq에 남긴다)
+    private final Map<String, Long> invalidated;
+    private long invalidationSeq;
+    private long forgottenSeq;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public CachingMemberRepository(MemberRepository target, int maximumSize) {
+        this(target, maximumSize, null);
+    }
+
+    /**
+     * @param ttl null이면 만료 없이 크기 제한으로만 제거한다.
+     */
+    public CachingMemberRepository(MemberRepository target, int maximumSize, Duration ttl) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        this.target = target;
+        this.maximumSize = maximumSize;
+        this.ttlNanos = ttl == null ? 0 : ttl.toNanos();
+        // accessOrder = true 이면 조회할 때마다 가장 뒤로 이동하므로, 가장 앞의 항목이 LRU 대상이 된다.
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > CachingMemberRepository.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.invalidated = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > CachingMemberRepository.this.maximumSize) {
+                    forgottenSeq = Math.max(forgottenSeq, eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Member save(Member member) {
+        Member saved = target.save(member);
+        written(member.getMemberId());
+        return saved;
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        TxCache tx = currentTx();
+        if (tx != null && tx.written.contains(memberId)) {
+            // 이 트랜잭션에서 수정한 회원은 커밋 전 값이므로 캐시를 거치지 않는다.
+            return target.findById(memberId);
+        }
+
+        Member cached = get(memberId);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        long loadSeq = currentSeq();
+        Member member = target.findById(memberId);
+        if (tx != null) {
+            tx.loaded.put(memberId, new Loaded(copy(member), loadSeq));
+        } else {
+            put(member, loadSeq);
+        }
+        return member;
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        target.update(memberId, money);
+        written(memberId);
+    }
+
+    @Override
+    public void update(Member member) {
+        target.update(member);
+        written(member.getMemberId());
+    }
+
+    @Override
+    public int adjustBalance(String memberId, int delta) {
+        int result = target.adjustBalance(memberId, delta);
+        written(memberId);
+        return result;
+    }
+
+    @Override
+    public void delete(String memberId) {
+        target.delete(memberId);
+        written(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> memberIds) {
+        TxCache tx = currentTx();
+        Map<String, Member> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+
+        for (String memberId : new LinkedHashSet<>(memberIds)) {
+            Member cached = (tx != null && tx.written.contains(memberId)) ? null : get(memberId);
+            if (cached != null) {
+                hits.increment();
+                result.put(memberId, cached);
+            } else {
+                misses.increment();
+                missing.add(memberId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            long loadSeq = currentSeq();
+            Map<String, Member> loaded = target.findAllByIds(missing);
+            for (Member member : loaded.values()) {
+                if (tx == null) {
+                    put(member, loadSeq);
+                } else if (!tx.written.contains(member.getMemberId())) {
+                    tx.loaded.put(member.getMemberId(), new Loaded(copy(member), loadSeq));
+                }
+            }
+            result.putAll(loaded);
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<Member> streamAll() {
+        return target.streamAll();
+    }
+
+    @Override
+    public void forEachMember(Consumer<Member> action) {
+        target.forEachMember(action);
+    }
+
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        return target.findPage(afterMemberId, limit);
+    }
+
+    // 집계 쿼리는 캐시하지 않는다.
+    @Override
+    public long totalMoney() {
+        return target.totalMoney();
+    }
+
+    @Override
+    public List<Member> topByMoney(int n) {
+        return target.topByMoney(n);
+    }
+
+    @Override
+    public long countByMoneyRange(int from, int to) {
+        return target.countByMoneyRange(from, to);
+    }
+
+    @Override
+    public SortedMap<Integer, Long> moneyHistogram(int bucketWidth) {
+        return target.moneyHistogram(bucketWidth);
+    }
+
+    @Override
+    public int[] saveAll(List<Member> members) {
+        int[] result = target.saveAll(members);
+        for (Member member : members) {
+            written(member.getMemberId());
+        }
+        return result;
+    }
+
+    @Override
+    public int[] updateAll(List<Member> members) {
+        int[] result = target.updateAll(members);
+        for (Member member : members) {
+            written(member.getMemberId());
+        }
+        return result;
+    }
+
+    @Override
+    public int[] adjustBalanceAll(Map<String, Integer> deltas) {
+        int[] result = target.adjustBalanceAll(deltas);
+        for (String memberId : deltas.keySet()) {
+            written(memberId);
+        }
+        return result;
+    }
+
+    @Override
+    public int[] deleteAll(List<String> memberIds) {
+        int[] result = target.deleteAll(memberIds);
+        for (String memberId : memberIds) {
+            written(memberId);
+        }
+        return result;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    // 변경된 회원은 즉시 무효화하고, 트랜잭션 중이라면 종료 후에 한 번 더 무효화한다.
+    // (트랜잭션 도중 다른 스레드가 커밋 전 값을 다시 캐시에 올렸을 수 있기 때문)
+    private void written(String memberId) {
+        evict(memberId);
+        TxCache tx = currentTx();
+        if (tx != null) {
+            tx.written.add(memberId);
+            tx.loaded.remove(memberId);
+        }
+    }
+
+    private synchronized Member get(String memberId) {
+        CacheEntry entry = cache.get(memberId);
+        if (entry == null) {
+            return null;
+        }
+        if (ttlNanos > 0 && System.nanoTime() - entry.createdAt > ttlNanos) {
+            cache.remove(memberId);
+            expirations.increment();
+            return null;
+        }
+        return copy(entry.member);
+    }
+
+    private synchronized long currentSeq() {
+        return invalidationSeq;
+    }
+
+    // loadSeq: DB에서 읽기 직전의 무효화 순번, 그 이후에 무효화되었으면 올리지 않는다.
+    private synchronized void put(Member member, long loadSeq) {
+        Long seq = invalidated.get(member.getMemberId());
+        if ((seq != null ? seq : forgottenSeq) > loadSeq) {
+            return;
+        }
+        cache.put(member.getMemberId(), new CacheEntry(copy(member), System.nanoTime()));
+    }
+
+    private synchronized void evict(String memberId) {
+        cache.remove(memberId);
+        invalidated.remove(memberId);
+        invalidated.put(memberId, ++invalidationSeq);
+    }
+
+    // Member는 변경 가능한 객체이므로 캐시 안의 값이 호출자에 의해 바뀌지 않도록 복사해서 주고받는다.
+    private static Member copy(Member member) {
+        return new Member(member.getMemberId(), member.getMoney(), member.getVersion());
+    }
+
+    private TxCache currentTx() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        TxCache tx = (TxCache) TransactionSynchronizationManager.getResource(this);
+        if (tx == null) {
+            tx = new TxCache();
+            TransactionSynchronizationManager.bindResource(this, tx);
+            TransactionSynchronizationManager.registerSynchronization(tx);
+        }
+        return tx;
+    }
+
+    private record CacheEntry(Member member, long createdAt) {
+    }
+
+    private record Loaded(Member member, long loadSeq) {
+    }
+
+    /**
+     * 트랜잭션 단위로 수정한 키와 캐시에 반영할 조회 결과를 모아두었다가 트랜잭션 종료 시 처리한다.
+     */
+    private class TxCache implements TransactionSynchronization {
+
+        private final Set<String> written = new HashSet<>();
+        private final Map<String, Loaded> loaded = new HashMap<>();
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CachingMemberRepository.this);
+
+            for (String memberId : written) {
+                evict(memberId);
+            }
+            if (status == STATUS_COMMITTED) {
+                for (Loaded load : loaded.values()) {
+                    put(load.member(), load.loadSeq());
+                }
+            }
+            log.debug("cache tx completed status={}, written={}, published={}", status, written.size(),
+                    status == STATUS_COMMITTED ? loaded.size() : 0);
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package hello.jdbc.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * findAllByIds의 IN 조회 (MemberRepositoryV4_1, V4_2, V5 공통)
+ *
+ * 중복을 제거한 키를 CHUNK_SIZE 개씩 나누어, 자리표시자가 CHUNK_SIZE 개인 같은 SQL로 조회한다.
+ * 마지막 chunk는 마지막 키를 반복해서 채운다. 항상 같은 SQL이므로 DB가 실행 계획을 재사용할 수 있다.
+ */
+final class MemberIdChunks {
+
+    static final int CHUNK_SIZE = 100;
+    static final String SQL = inQuery(CHUNK_SIZE);
+
+    private MemberIdChunks() {
+    }
+
+    /**
+     * @return chunk마다 CHUNK_SIZE 개로 채운 바인딩 값, 키가 없으면 빈 목록
+     */
+    static List<String[]> of(Collection<String> memberIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(memberIds));
+        List<String[]> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()));
+            String[] args = new String[CHUNK_SIZE];
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                args[i] = chunk.get(Math.min(i, chunk.size() - 1));
+            }
+            chunks.add(args);
+        }
+        return chunks;
+    }
+
+    private static String inQuery(int size) {
+        StringBuilder sql = new StringBuilder("SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER WHERE MEMBER_ID IN (");
+        for (int i = 0; i < size; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.append(")").toString();
+    }
+
+}
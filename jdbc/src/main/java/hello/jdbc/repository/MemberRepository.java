@@ -2,6 +2,13 @@ package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
 public interface MemberRepository {
     Member save(Member member);
 
@@ -9,5 +16,82 @@ public interface MemberRepository {
 
     void update(String memberId, int money);
 
+    /**
+     * 낙관적 락 수정. 조회했을 때의 version과 DB의 VERSION이 같을 때만 수정하고 version을 1 증가시킨다.
+     * 그 사이 다른 트랜잭션이 수정(또는 삭제)했다면 OptimisticLockingFailureException을 던진다.
+     */
+    void update(Member member);
+
     void delete(String memberId);
+
+    /**
+     * MONEY = MONEY + delta 를 DB에서 원자적으로 수행한다.
+     * 잔액이 음수가 되는 경우는 WHERE 조건에서 걸러지므로, 반환값(영향받은 row 수)이 0이면
+     * 회원이 없거나 잔액이 부족한 것이다.
+     */
+    int adjustBalance(String memberId, int delta);
+
+    /**
+     * adjustBalance()를 JDBC Batch로 수행한다. 반환값은 deltas의 순서대로 영향받은 row 수.
+     */
+    int[] adjustBalanceAll(Map<String, Integer> deltas);
+
+    /**
+     * 여러 회원을 IN 절로 묶어서 한 번에 조회한다.
+     * 존재하지 않는 memberId는 예외 없이 결과 Map에서 빠진다.
+     */
+    Map<String, Member> findAllByIds(Collection<String> memberIds);
+
+    /**
+     * 전체 회원을 forward-only 커서로 fetchSize 만큼씩 읽어온다.
+     * 커넥션과 ResultSet은 Stream을 close 할 때 반납되므로 반드시 try-with-resources로 사용해야 한다.
+     */
+    Stream<Member> streamAll();
+
+    /**
+     * streamAll()의 콜백 버전. 리소스 반납까지 메서드 안에서 처리한다.
+     */
+    void forEachMember(Consumer<Member> action);
+
+    /**
+     * MEMBER_ID 순으로 afterMemberId 다음부터 limit 개를 조회한다. (keyset pagination)
+     * afterMemberId가 null이면 첫 페이지. 다음 페이지는 마지막 회원의 memberId를 넘겨서 조회한다.
+     * limit이 음수이면 IllegalArgumentException
+     */
+    List<Member> findPage(String afterMemberId, int limit);
+
+    /**
+     * 전체 회원의 잔액 합계. 회원이 없으면 0
+     */
+    long totalMoney();
+
+    /**
+     * 잔액이 많은 순으로 n명. 잔액이 같으면 MEMBER_ID 순
+     * n이 음수이면 IllegalArgumentException
+     */
+    List<Member> topByMoney(int n);
+
+    /**
+     * from <= MONEY < to 인 회원 수
+     */
+    long countByMoneyRange(int from, int to);
+
+    /**
+     * 잔액을 bucketWidth 단위 구간으로 나눈 회원 수. key는 구간의 시작 값 (..., -bucketWidth, 0, bucketWidth, 2 * bucketWidth ...)
+     * 회원이 없는 구간은 결과에 없다.
+     */
+    SortedMap<Integer, Long> moneyHistogram(int bucketWidth);
+
+    /**
+     * JDBC Batch로 여러 회원을 저장한다.
+     * 반환값은 입력 순서대로의 row별 영향받은 row 수.
+     */
+    int[] saveAll(List<Member> members);
+
+    /**
+     * 각 Member의 money로 일괄 수정한다.
+     */
+    int[] updateAll(List<Member> members);
+
+    int[] deleteAll(List<String> memberIds);
 }
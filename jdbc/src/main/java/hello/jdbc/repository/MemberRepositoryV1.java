@@ -84,7 +84,7 @@ public class MemberRepositoryV1 {
     }
 
     public void update(String memberId, int money) throws SQLException {
-        String sql = "UPDATE MEMBER SET MONEY = ? WHERE MEMBER_ID = ?";
+        String sql = "UPDATE MEMBER SET MONEY = ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
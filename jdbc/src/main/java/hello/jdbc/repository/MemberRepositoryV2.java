@@ -117,7 +117,7 @@ public class MemberRepositoryV2 {
     }
 
     public void update(String memberId, int money) throws SQLException {
-        String sql = "UPDATE MEMBER SET MONEY = ? WHERE MEMBER_ID = ?";
+        String sql = "UPDATE MEMBER SET MONEY = ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -140,7 +140,7 @@ public class MemberRepositoryV2 {
     }
 
     public void update(Connection con, String memberId, int money) throws SQLException {
-        String sql = "UPDATE MEMBER SET MONEY = ? WHERE MEMBER_ID = ?";
+        String sql = "UPDATE MEMBER SET MONEY = ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ?";
 
         PreparedStatement pstmt = null;
 
@@ -191,7 +191,8 @@ public class MemberRepositoryV2 {
     // DriverManager를 통해서 Connection을 획득.
     private Connection getConnection() throws SQLException {
         Connection con = dataSource.getConnection();
-        log.info("get connection={}, class={}", con, con.getClass());
+        // 획득 대기/보유 시간은 InstrumentedDataSource로 측정한다.
+        log.debug("get connection={}, class={}", con, con.getClass());
         return con;
     }
 
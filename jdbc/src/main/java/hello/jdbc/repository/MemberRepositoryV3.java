@@ -18,9 +18,15 @@ import java.util.NoSuchElementException;
 public class MemberRepositoryV3 {
 
     private final DataSource dataSource;
+    private final StatementCache statementCache;
 
     public MemberRepositoryV3(DataSource dataSource) {
+        this(dataSource, new StatementCache());
+    }
+
+    public MemberRepositoryV3(DataSource dataSource, StatementCache statementCache) {
         this.dataSource = dataSource;
+        this.statementCache = statementCache;
     }
 
     public Member save(Member member) throws SQLException {
@@ -36,7 +42,7 @@ public class MemberRepositoryV3 {
 
         try {
             con = getConnection();
-            pstmt = con.prepareStatement(sql);
+            pstmt = statementCache.prepareStatement(con, sql);
             pstmt.setString(1, member.getMemberId());
             pstmt.setInt(2, member.getMoney());
 
@@ -53,7 +59,7 @@ public class MemberRepositoryV3 {
     }
 
     public Member findById(String memberId) throws SQLException {
-        String sql = "SELECT * FROM MEMBER WHERE MEMBER_ID = ?";
+        String sql = "SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER WHERE MEMBER_ID = ?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -61,7 +67,7 @@ public class MemberRepositoryV3 {
 
         try {
             con = getConnection();
-            pstmt = con.prepareStatement(sql);
+            pstmt = statementCache.prepareStatement(con, sql);
             pstmt.setString(1, memberId);
 
             // executeQuery()는 DB 조회 결과인 ResultSet을 반환해줌.
@@ -69,9 +75,7 @@ public class MemberRepositoryV3 {
 
             // ResultSet의 cursor은 최초에 데이터를 가리키지 않기 때문에, next를 통해 cursor를 이동시켜주어야 한다.
             if(rs.next()) {
-                Member member = new Member();
-                member.setMemberId(rs.getString("member_id"));
-                member.setMoney(rs.getInt("money"));
+                Member member = MemberRowMapper.INSTANCE.mapRow(rs, 0);
                 return member;
             } else {
                 throw new NoSuchElementException("member not found memberId=" + memberId);
@@ -86,14 +90,14 @@ public class MemberRepositoryV3 {
     }
 
     public void update(String memberId, int money) throws SQLException {
-        String sql = "UPDATE MEMBER SET MONEY = ? WHERE MEMBER_ID = ?";
+        String sql = "UPDATE MEMBER SET MONEY = ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
 
         try {
             con = getConnection();
-            pstmt = con.prepareStatement(sql);
+            pstmt = statementCache.prepareStatement(con, sql);
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
 
@@ -116,7 +120,7 @@ public class MemberRepositoryV3 {
 
         try {
             con = getConnection();
-            pstmt = con.prepareStatement(sql);
+            pstmt = statementCache.prepareStatement(con, sql);
             pstmt.setString(1, memberId);
             pstmt.executeUpdate();
         } catch (SQLException e) {
@@ -130,7 +134,8 @@ public class MemberRepositoryV3 {
     private void close(Connection con, Statement stmt, ResultSet rs) {
 
         JdbcUtils.closeResultSet(rs);
-        JdbcUtils.closeStatement(stmt);
+        // 트랜잭션 중 캐시된 PreparedStatement는 트랜잭션 종료 시 닫힌다.
+        statementCache.release(stmt);
 
         // 주의! 트랜잭션 동기화를 사용하려면 DataSourceUtils를 사용해야 한다.
         DataSourceUtils.releaseConnection(con, dataSource);
@@ -144,7 +149,8 @@ public class MemberRepositoryV3 {
         // 주의! 트랜잭션 동기화를 사용하려면 DataSourceUtils를 사용해야 한다.
         // 트랜잭션 동기화 매니저에서 보관된 Connection을 꺼낸다.
         Connection con = DataSourceUtils.getConnection(dataSource);
-        log.info("get connection={}, class={}", con, con.getClass());
+        // 획득 대기/보유 시간은 InstrumentedDataSource로 측정한다.
+        log.debug("get connection={}, class={}", con, con.getClass());
         return con;
     }
 
@@ -3,6 +3,8 @@ package hello.jdbc.repository;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.ex.MyDbException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
@@ -10,7 +12,10 @@ import org.springframework.jdbc.support.SQLExceptionTranslator;
 
 import javax.sql.DataSource;
 import java.sql.*;
-import java.util.NoSuchElementException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * SQLExceptionTranslator 추가
@@ -18,12 +23,45 @@ import java.util.NoSuchElementException;
 @Slf4j
 public class MemberRepositoryV4_2 implements MemberRepository {
 
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_FETCH_SIZE = 500;
+    // 결과 목록의 초기 용량 상한 - 호출자가 넘긴 limit 만큼 미리 할당하지 않는다.
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
     private final DataSource dataSource;
     private final SQLExceptionTranslator exTranslator;
+    private final int batchSize;
+    private final int fetchSize;
+    private final StatementCache statementCache;
 
     public MemberRepositoryV4_2(DataSource dataSource) {
+        this(dataSource, DEFAULT_BATCH_SIZE, DEFAULT_FETCH_SIZE);
+    }
+
+    public MemberRepositoryV4_2(DataSource dataSource, int batchSize) {
+        this(dataSource, batchSize, DEFAULT_FETCH_SIZE);
+    }
+
+    public MemberRepositoryV4_2(DataSource dataSource, StatementCache statementCache) {
+        this(dataSource, DEFAULT_BATCH_SIZE, DEFAULT_FETCH_SIZE, statementCache);
+    }
+
+    public MemberRepositoryV4_2(DataSource dataSource, int batchSize, int fetchSize) {
+        this(dataSource, batchSize, fetchSize, new StatementCache());
+    }
+
+    public MemberRepositoryV4_2(DataSource dataSource, int batchSize, int fetchSize, StatementCache statementCache) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize must be positive: " + fetchSize);
+        }
         this.dataSource = dataSource;
         this.exTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        this.batchSize = batchSize;
+        this.fetchSize = fetchSize;
+        this.statementCache = statementCache;
     }
 
     @Override
@@ -40,7 +78,7 @@ public class MemberRepositoryV4_2 implements MemberRepository {
 
         try {
             con = getConnection();
-            pstmt = con.prepareStatement(sql);
+            pstmt = statementCache.prepareStatement(con, sql);
             pstmt.setString(1, member.getMemberId());
             pstmt.setInt(2, member.getMoney());
 
@@ -57,7 +95,7 @@ public class MemberRepositoryV4_2 implements MemberRepository {
 
     @Override
     public Member findById(String memberId) {
-        String sql = "SELECT * FROM MEMBER WHERE MEMBER_ID = ?";
+        String sql = "SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER WHERE MEMBER_ID = ?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -65,7 +103,7 @@ public class MemberRepositoryV4_2 implements MemberRepository {
 
         try {
             con = getConnection();
-            pstmt = con.prepareStatement(sql);
+            pstmt = statementCache.prepareStatement(con, sql);
             pstmt.setString(1, memberId);
 
             // executeQuery()는 DB 조회 결과인 ResultSet을 반환해줌.
@@ -73,9 +111,7 @@ public class MemberRepositoryV4_2 implements MemberRepository {
 
             // ResultSet의 cursor은 최초에 데이터를 가리키지 않기 때문에, next를 통해 cursor를 이동시켜주어야 한다.
             if(rs.next()) {
-                Member member = new Member();
-                member.setMemberId(rs.getString("member_id"));
-                member.setMoney(rs.getInt("money"));
+                Member member = MemberRowMapper.INSTANCE.mapRow(rs, 0);
                 return member;
             } else {
                 throw new NoSuchElementException("member not found memberId=" + memberId);
@@ -90,14 +126,14 @@ public class MemberRepositoryV4_2 implements MemberRepository {
 
     @Override
     public void update(String memberId, int money) {
-        String sql = "UPDATE MEMBER SET MONEY = ? WHERE MEMBER_ID = ?";
+        String sql = "UPDATE MEMBER SET MONEY = ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
 
         try {
             con = getConnection();
-            pstmt = con.prepareStatement(sql);
+            pstmt = statementCache.prepareStatement(con, sql);
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
 
@@ -111,6 +147,55 @@ public class MemberRepositoryV4_2 implements MemberRepository {
         }
     }
 
+    @Override
+    public void update(Member member) {
+        String sql = "UPDATE MEMBER SET MONEY = ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ? AND VERSION = ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        int resultSize;
+
+        try {
+            con = getConnection();
+            pstmt = statementCache.prepareStatement(con, sql);
+            pstmt.setInt(1, member.getMoney());
+            pstmt.setString(2, member.getMemberId());
+            pstmt.setLong(3, member.getVersion());
+            resultSize = pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw exTranslator.translate("update", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+
+        if (resultSize == 0) {
+            throw new OptimisticLockingFailureException("member was updated or deleted by another transaction memberId="
+                    + member.getMemberId() + ", version=" + member.getVersion());
+        }
+        member.setVersion(member.getVersion() + 1);
+    }
+
+    @Override
+    public int adjustBalance(String memberId, int delta) {
+        String sql = "UPDATE MEMBER SET MONEY = MONEY + ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ? AND MONEY + ? >= 0";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = statementCache.prepareStatement(con, sql);
+            pstmt.setInt(1, delta);
+            pstmt.setString(2, memberId);
+            pstmt.setInt(3, delta);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw exTranslator.translate("adjustBalance", sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
     @Override
     public void delete(String memberId) {
         String sql = "DELETE FROM MEMBER WHERE MEMBER_ID = ?";
@@ -120,7 +205,7 @@ public class MemberRepositoryV4_2 implements MemberRepository {
 
         try {
             con = getConnection();
-            pstmt = con.prepareStatement(sql);
+            pstmt = statementCache.prepareStatement(con, sql);
             pstmt.setString(1, memberId);
             pstmt.executeUpdate();
         } catch (SQLException e) {
@@ -130,10 +215,306 @@ public class MemberRepositoryV4_2 implements MemberRepository {
         }
     }
 
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> memberIds) {
+        String sql = MemberIdChunks.SQL;
+
+        List<String[]> chunks = MemberIdChunks.of(memberIds);
+        Map<String, Member> result = new HashMap<>();
+        if (chunks.isEmpty()) {
+            return result;
+        }
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = statementCache.prepareStatement(con, sql);
+
+            for (String[] chunk : chunks) {
+                for (int i = 0; i < chunk.length; i++) {
+                    pstmt.setString(i + 1, chunk[i]);
+                }
+
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    Member member = MemberRowMapper.INSTANCE.mapRow(rs, 0);
+                    result.put(member.getMemberId(), member);
+                }
+                JdbcUtils.closeResultSet(rs);
+            }
+
+            return result;
+        } catch (SQLException e) {
+            throw exTranslator.translate("findAllByIds", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    @Override
+    public Stream<Member> streamAll() {
+        String sql = "SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // 한 번에 fetchSize 만큼만 가져오므로 테이블 전체를 메모리에 올리지 않는다.
+            pstmt.setFetchSize(fetchSize);
+            ResultSet rs = pstmt.executeQuery();
+            return memberStream(con, pstmt, rs, sql);
+        } catch (SQLException e) {
+            close(con, pstmt, null);
+            throw exTranslator.translate("streamAll", sql, e);
+        }
+    }
+
+    @Override
+    public void forEachMember(Consumer<Member> action) {
+        try (Stream<Member> members = streamAll()) {
+            members.forEach(action);
+        }
+    }
+
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        }
+        // OFFSET을 쓰지 않고 PK 인덱스에서 바로 시작 위치를 찾으므로 뒤쪽 페이지도 첫 페이지와 비용이 같다.
+        String sql = "SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER WHERE MEMBER_ID > ? ORDER BY MEMBER_ID LIMIT ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = statementCache.prepareStatement(con, sql);
+            pstmt.setString(1, afterMemberId == null ? "" : afterMemberId);
+            pstmt.setInt(2, limit);
+            rs = pstmt.executeQuery();
+
+            List<Member> members = new ArrayList<>(Math.min(limit, MAX_INITIAL_CAPACITY));
+            while (rs.next()) {
+                Member member = MemberRowMapper.INSTANCE.mapRow(rs, 0);
+                members.add(member);
+            }
+            return members;
+        } catch (SQLException e) {
+            throw exTranslator.translate("findPage", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    @Override
+    public long totalMoney() {
+        String sql = "SELECT COALESCE(SUM(MONEY), 0) FROM MEMBER";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = statementCache.prepareStatement(con, sql);
+            rs = pstmt.executeQuery();
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw exTranslator.translate("totalMoney", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    @Override
+    public List<Member> topByMoney(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative: " + n);
+        }
+        // IDX_MEMBER_MONEY를 앞에서부터 n개만 읽는다.
+        String sql = "SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER ORDER BY MONEY DESC, MEMBER_ID LIMIT ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = statementCache.prepareStatement(con, sql);
+            pstmt.setInt(1, n);
+            rs = pstmt.executeQuery();
+
+            List<Member> members = new ArrayList<>(Math.min(n, MAX_INITIAL_CAPACITY));
+            while (rs.next()) {
+                members.add(MemberRowMapper.INSTANCE.mapRow(rs, 0));
+            }
+            return members;
+        } catch (SQLException e) {
+            throw exTranslator.translate("topByMoney", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    @Override
+    public long countByMoneyRange(int from, int to) {
+        String sql = "SELECT COUNT(*) FROM MEMBER WHERE MONEY >= ? AND MONEY < ?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = statementCache.prepareStatement(con, sql);
+            pstmt.setInt(1, from);
+            pstmt.setInt(2, to);
+            rs = pstmt.executeQuery();
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw exTranslator.translate("countByMoneyRange", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    @Override
+    public SortedMap<Integer, Long> moneyHistogram(int bucketWidth) {
+        if (bucketWidth <= 0) {
+            throw new IllegalArgumentException("bucketWidth must be positive: " + bucketWidth);
+        }
+        // 구간의 시작 값 = FLOOR(MONEY / width) * width
+        // MOD는 음수에서 0 쪽으로 잘라내므로 쓰지 않는다. (update()는 잔액을 검사 없이 덮어쓰므로 음수가 있을 수 있다)
+        String sql = "SELECT BUCKET, COUNT(*) FROM (SELECT CAST(FLOOR(MONEY / CAST(? AS DOUBLE)) AS BIGINT) * ? AS BUCKET FROM MEMBER) B "
+                + "GROUP BY BUCKET ORDER BY BUCKET";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = getConnection();
+            pstmt = statementCache.prepareStatement(con, sql);
+            pstmt.setInt(1, bucketWidth);
+            pstmt.setInt(2, bucketWidth);
+            rs = pstmt.executeQuery();
+
+            SortedMap<Integer, Long> histogram = new TreeMap<>();
+            while (rs.next()) {
+                histogram.put(rs.getInt(1), rs.getLong(2));
+            }
+            return histogram;
+        } catch (SQLException e) {
+            throw exTranslator.translate("moneyHistogram", sql, e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    @Override
+    public int[] saveAll(List<Member> members) {
+        String sql = "INSERT INTO MEMBER(MEMBER_ID, MONEY) VALUES(?, ?)";
+        return executeBatch("saveAll", sql, members, (pstmt, member) -> {
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+        });
+    }
+
+    @Override
+    public int[] updateAll(List<Member> members) {
+        String sql = "UPDATE MEMBER SET MONEY = ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ?";
+        return executeBatch("updateAll", sql, members, (pstmt, member) -> {
+            pstmt.setInt(1, member.getMoney());
+            pstmt.setString(2, member.getMemberId());
+        });
+    }
+
+    @Override
+    public int[] adjustBalanceAll(Map<String, Integer> deltas) {
+        String sql = "UPDATE MEMBER SET MONEY = MONEY + ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ? AND MONEY + ? >= 0";
+        return executeBatch("adjustBalanceAll", sql, new ArrayList<>(deltas.entrySet()), (pstmt, delta) -> {
+            pstmt.setInt(1, delta.getValue());
+            pstmt.setString(2, delta.getKey());
+            pstmt.setInt(3, delta.getValue());
+        });
+    }
+
+    @Override
+    public int[] deleteAll(List<String> memberIds) {
+        String sql = "DELETE FROM MEMBER WHERE MEMBER_ID = ?";
+        return executeBatch("deleteAll", sql, memberIds, (pstmt, memberId) -> pstmt.setString(1, memberId));
+    }
+
+    // addBatch()로 모아두었다가 batchSize 단위로 executeBatch()를 호출한다. (batchSize 만큼의 row를 한 번의 round trip으로 전송)
+    // autocommit 상태에서는 row마다 커밋되므로, 대량 적재 시에는 트랜잭션 안에서 호출해야 커밋도 한 번으로 줄어든다.
+    private <T> int[] executeBatch(String task, String sql, List<T> items, ParameterizedPreparedStatementSetter<T> setter) {
+        int[] result = new int[items.size()];
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = getConnection();
+            pstmt = statementCache.prepareStatement(con, sql);
+            // 캐시에서 재사용한 Statement라면 이전에 실패하고 남은 batch가 있을 수 있다.
+            pstmt.clearBatch();
+
+            int executed = 0;
+            for (int i = 0; i < items.size(); i++) {
+                setter.setValues(pstmt, items.get(i));
+                pstmt.addBatch();
+
+                if ((i + 1) % batchSize == 0 || i == items.size() - 1) {
+                    int[] counts = pstmt.executeBatch();
+                    System.arraycopy(counts, 0, result, executed, counts.length);
+                    executed += counts.length;
+                }
+            }
+            log.info("{} batchSize={}, rows={}", task, batchSize, executed);
+
+            return result;
+        } catch (SQLException e) {
+            throw exTranslator.translate(task, sql, e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    // Stream이 close 될 때 ResultSet, Statement를 닫고 Connection을 반납한다.
+    // 트랜잭션 동기화 중이라면 DataSourceUtils.releaseConnection()은 실제로 닫지 않고 트랜잭션에 그대로 둔다.
+    private Stream<Member> memberStream(Connection con, Statement stmt, ResultSet rs, String sql) {
+        Spliterator<Member> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Member> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    Member member = MemberRowMapper.INSTANCE.mapRow(rs, 0);
+                    action.accept(member);
+                    return true;
+                } catch (SQLException e) {
+                    throw exTranslator.translate("streamAll", sql, e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(() -> close(con, stmt, rs));
+    }
+
     private void close(Connection con, Statement stmt, ResultSet rs) {
 
         JdbcUtils.closeResultSet(rs);
-        JdbcUtils.closeStatement(stmt);
+        // 트랜잭션 중 캐시된 PreparedStatement는 트랜잭션 종료 시 닫힌다.
+        statementCache.release(stmt);
 
         // 주의! 트랜잭션 동기화를 사용하려면 DataSourceUtils를 사용해야 한다.
         DataSourceUtils.releaseConnection(con, dataSource);
@@ -147,7 +528,8 @@ public class MemberRepositoryV4_2 implements MemberRepository {
         // 주의! 트랜잭션 동기화를 사용하려면 DataSourceUtils를 사용해야 한다.
         // 트랜잭션 동기화 매니저에서 보관된 Connection을 꺼낸다.
         Connection con = DataSourceUtils.getConnection(dataSource);
-        log.info("get connection={}, class={}", con, con.getClass());
+        // 획득 대기/보유 시간은 InstrumentedDataSource로 측정한다.
+        log.debug("get connection={}, class={}", con, con.getClass());
         return con;
     }
 
@@ -2,10 +2,15 @@ package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
 
 import javax.sql.DataSource;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * JdbcTemplate 사용
@@ -13,10 +18,33 @@ import javax.sql.DataSource;
 @Slf4j
 public class MemberRepositoryV5 implements MemberRepository {
 
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
     private final JdbcTemplate template;
+    // 전체 조회용 JdbcTemplate. fetchSize는 template 단위 설정이라 단건 조회용과 분리한다.
+    private final JdbcTemplate streamTemplate;
+    private final int batchSize;
 
     public MemberRepositoryV5(DataSource dataSource) {
+        this(dataSource, DEFAULT_BATCH_SIZE, DEFAULT_FETCH_SIZE);
+    }
+
+    public MemberRepositoryV5(DataSource dataSource, int batchSize) {
+        this(dataSource, batchSize, DEFAULT_FETCH_SIZE);
+    }
+
+    public MemberRepositoryV5(DataSource dataSource, int batchSize, int fetchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize must be positive: " + fetchSize);
+        }
         this.template = new JdbcTemplate(dataSource);
+        this.streamTemplate = new JdbcTemplate(dataSource);
+        this.streamTemplate.setFetchSize(fetchSize);
+        this.batchSize = batchSize;
     }
 
     @Override
@@ -28,29 +56,158 @@ public class MemberRepositoryV5 implements MemberRepository {
 
     @Override
     public Member findById(String memberId) {
-        String sql = "SELECT * FROM MEMBER WHERE MEMBER_ID = ?";
-        return template.queryForObject(sql, memberRowMapper(), memberId);
+        String sql = "SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER WHERE MEMBER_ID = ?";
+        return template.queryForObject(sql, MemberRowMapper.INSTANCE, memberId);
     }
 
     @Override
     public void update(String memberId, int money) {
-        String sql = "UPDATE MEMBER SET MONEY = ? WHERE MEMBER_ID = ?";
+        String sql = "UPDATE MEMBER SET MONEY = ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ?";
         template.update(sql, money, memberId);
     }
 
+    @Override
+    public void update(Member member) {
+        String sql = "UPDATE MEMBER SET MONEY = ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ? AND VERSION = ?";
+        int resultSize = template.update(sql, member.getMoney(), member.getMemberId(), member.getVersion());
+        if (resultSize == 0) {
+            throw new OptimisticLockingFailureException("member was updated or deleted by another transaction memberId="
+                    + member.getMemberId() + ", version=" + member.getVersion());
+        }
+        member.setVersion(member.getVersion() + 1);
+    }
+
+    @Override
+    public int adjustBalance(String memberId, int delta) {
+        String sql = "UPDATE MEMBER SET MONEY = MONEY + ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ? AND MONEY + ? >= 0";
+        return template.update(sql, delta, memberId, delta);
+    }
+
     @Override
     public void delete(String memberId) {
         String sql = "DELETE FROM MEMBER WHERE MEMBER_ID = ?";
         template.update(sql, memberId);
     }
 
-    private RowMapper<Member> memberRowMapper() {
-        return (rs, rowNum) -> {
-            Member member = new Member();
-            member.setMemberId(rs.getString("member_id"));
-            member.setMoney(rs.getInt("money"));
-            return member;
-        };
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> memberIds) {
+        Map<String, Member> result = new HashMap<>();
+        for (String[] chunk : MemberIdChunks.of(memberIds)) {
+            for (Member member : template.query(MemberIdChunks.SQL, MemberRowMapper.INSTANCE, (Object[]) chunk)) {
+                result.put(member.getMemberId(), member);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<Member> streamAll() {
+        String sql = "SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER";
+        // queryForStream()은 Stream이 close 될 때 ResultSet, Statement를 닫고 DataSourceUtils로 Connection을 반납한다.
+        return streamTemplate.queryForStream(sql, MemberRowMapper.INSTANCE);
+    }
+
+    @Override
+    public void forEachMember(Consumer<Member> action) {
+        String sql = "SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER";
+        RowCallbackHandler handler = rs -> action.accept(MemberRowMapper.INSTANCE.mapRow(rs, 0));
+        streamTemplate.query(sql, handler);
+    }
+
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        }
+        // OFFSET을 쓰지 않고 PK 인덱스에서 바로 시작 위치를 찾으므로 뒤쪽 페이지도 첫 페이지와 비용이 같다.
+        String sql = "SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER WHERE MEMBER_ID > ? ORDER BY MEMBER_ID LIMIT ?";
+        return template.query(sql, MemberRowMapper.INSTANCE, afterMemberId == null ? "" : afterMemberId, limit);
+    }
+
+    @Override
+    public long totalMoney() {
+        String sql = "SELECT COALESCE(SUM(MONEY), 0) FROM MEMBER";
+        return template.queryForObject(sql, Long.class);
+    }
+
+    @Override
+    public List<Member> topByMoney(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative: " + n);
+        }
+        // IDX_MEMBER_MONEY를 앞에서부터 n개만 읽는다.
+        String sql = "SELECT " + MemberRowMapper.COLUMNS + " FROM MEMBER ORDER BY MONEY DESC, MEMBER_ID LIMIT ?";
+        return template.query(sql, MemberRowMapper.INSTANCE, n);
+    }
+
+    @Override
+    public long countByMoneyRange(int from, int to) {
+        String sql = "SELECT COUNT(*) FROM MEMBER WHERE MONEY >= ? AND MONEY < ?";
+        return template.queryForObject(sql, Long.class, from, to);
+    }
+
+    @Override
+    public SortedMap<Integer, Long> moneyHistogram(int bucketWidth) {
+        if (bucketWidth <= 0) {
+            throw new IllegalArgumentException("bucketWidth must be positive: " + bucketWidth);
+        }
+        // 구간의 시작 값 = FLOOR(MONEY / width) * width
+        // MOD는 음수에서 0 쪽으로 잘라내므로 쓰지 않는다. (update()는 잔액을 검사 없이 덮어쓰므로 음수가 있을 수 있다)
+        String sql = "SELECT BUCKET, COUNT(*) FROM (SELECT CAST(FLOOR(MONEY / CAST(? AS DOUBLE)) AS BIGINT) * ? AS BUCKET FROM MEMBER) B "
+                + "GROUP BY BUCKET ORDER BY BUCKET";
+
+        SortedMap<Integer, Long> histogram = new TreeMap<>();
+        template.query(sql, rs -> {
+            histogram.put(rs.getInt(1), rs.getLong(2));
+        }, bucketWidth, bucketWidth);
+        return histogram;
+    }
+
+    @Override
+    public int[] saveAll(List<Member> members) {
+        String sql = "INSERT INTO MEMBER(MEMBER_ID, MONEY) VALUES(?, ?)";
+        return batchUpdate(sql, members, (ps, member) -> {
+            ps.setString(1, member.getMemberId());
+            ps.setInt(2, member.getMoney());
+        });
+    }
+
+    @Override
+    public int[] updateAll(List<Member> members) {
+        String sql = "UPDATE MEMBER SET MONEY = ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ?";
+        return batchUpdate(sql, members, (ps, member) -> {
+            ps.setInt(1, member.getMoney());
+            ps.setString(2, member.getMemberId());
+        });
+    }
+
+    @Override
+    public int[] adjustBalanceAll(Map<String, Integer> deltas) {
+        String sql = "UPDATE MEMBER SET MONEY = MONEY + ?, VERSION = VERSION + 1 WHERE MEMBER_ID = ? AND MONEY + ? >= 0";
+        return batchUpdate(sql, new ArrayList<>(deltas.entrySet()), (ps, delta) -> {
+            ps.setInt(1, delta.getValue());
+            ps.setString(2, delta.getKey());
+            ps.setInt(3, delta.getValue());
+        });
+    }
+
+    @Override
+    public int[] deleteAll(List<String> memberIds) {
+        String sql = "DELETE FROM MEMBER WHERE MEMBER_ID = ?";
+        return batchUpdate(sql, memberIds, (ps, memberId) -> ps.setString(1, memberId));
+    }
+
+    // JdbcTemplate은 batchSize 단위로 나눈 결과를 int[][]로 돌려주므로, 입력 순서대로 펼쳐서 반환한다.
+    private <T> int[] batchUpdate(String sql, List<T> items, ParameterizedPreparedStatementSetter<T> setter) {
+        int[][] counts = template.batchUpdate(sql, items, batchSize, setter);
+
+        int[] result = new int[items.size()];
+        int index = 0;
+        for (int[] batch : counts) {
+            System.arraycopy(batch, 0, result, index, batch.length);
+            index += batch.length;
+        }
+        return result;
     }
 
 }
@@ -0,0 +1,33 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * MEMBER 조회 결과 매핑
+ * 상태가 없으므로 INSTANCE 하나를 공유한다.
+ * 컬럼 이름 대신 COLUMNS 순서의 인덱스로 읽으므로, 조회 SQL은 반드시 SELECT COLUMNS 로 작성해야 한다.
+ * rowNum은 사용하지 않으므로 직접 호출할 때는 0을 넘겨도 된다.
+ */
+public final class MemberRowMapper implements RowMapper<Member> {
+
+    public static final String COLUMNS = "MEMBER_ID, MONEY, VERSION";
+
+    public static final MemberRowMapper INSTANCE = new MemberRowMapper();
+
+    private static final int MEMBER_ID = 1;
+    private static final int MONEY = 2;
+    private static final int VERSION = 3;
+
+    private MemberRowMapper() {
+    }
+
+    @Override
+    public Member mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new Member(rs.getString(MEMBER_ID), rs.getInt(MONEY), rs.getLong(VERSION));
+    }
+
+}
@@ -0,0 +1,915 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * memberId를 consistent hashing으로 여러 DataSource(shard)에 나눠 저장하는 MemberRepository
+ *
+ * 라우팅
+ * - shard마다 가상 노드(virtualNodes)개의 토큰을 해시 링에 올리고, memberId의 해시 다음에 오는 토큰(가상 노드)이 주인이다.
+ *   가상 노드 하나가 맡는 해시 구간을 "구간"이라고 부른다.
+ * - shard를 추가/제거해도 그 shard의 토큰에 인접한 구간의 키만 옮겨진다.
+ * - 각 shard는 MemberRepositoryV5로 접근하므로 shard의 DataSource에 걸린 트랜잭션에는 그대로 참여한다.
+ *
+ * 여러 shard 조회 (scatter-gather)
+ * - findAllByIds는 shard별로 키를 나눠 동시에 조회하고 합친다.
+ * - 집계(totalMoney, countByMoneyRange, moneyHistogram)는 shard별 결과를 더하고,
+ *   topByMoney, findPage는 shard별 상위 n개를 받아 다시 정렬해서 n개를 고른다.
+ * - 트랜잭션 동기화가 활성화되어 있으면 커넥션이 스레드에 묶여 있으므로 호출 스레드에서 순서대로 조회한다.
+ *
+ * shard 간 이체 (transfer)
+ * - 두 회원이 같은 shard면 그 shard의 로컬 트랜잭션 하나로 처리한다.
+ * - 다르면 2단계 로컬 트랜잭션 + 보상으로 처리한다. (분산 트랜잭션을 쓰지 않는다)
+ *   1. 출금 shard에서 출금 후 커밋 (잔액 부족이면 여기서 실패하고 끝)
+ *   2. 입금 shard에서 입금 후 커밋
+ *   3. 2가 실패하면 출금 shard에 같은 금액을 다시 입금(보상)하고 원래 예외를 던진다.
+ *   1과 2 사이에는 이체 금액이 어느 쪽에도 없으므로 그 순간의 totalMoney()는 그만큼 작게 보일 수 있다.
+ *   보상까지 실패하면 error 로그를 남기고 getCompensationFailureCount()로 집계한다. 이 경우는 수동 정정이 필요하다.
+ *
+ * 온라인 resharding (addShard, removeShard)
+ * - 원본 shard를 잠금 없이 한 번 훑어서 옮길 후보를 모은다. 그 뒤에 원본에 쓰인 키는 따로 기록해 둔다.
+ * - 그 다음 구간 하나씩: 구간 쓰기 잠금 -> 후보의 현재 값 조회 -> 새 주인에게 복사(MERGE, VERSION 유지) -> 링 교체 -> 원본에서 삭제
+ *   한 번에 막히는 쓰기는 옮기는 중인 구간(전체 키의 약 1 / (shard 수 * virtualNodes))에 대한 것뿐이다.
+ * - 복사 -> 링 교체 -> 삭제 동안에는 집계/전체 조회(forEachMember, findPage 포함)도 기다린다. 구간 하나의 행 수만큼의 시간이다.
+ *   반대로 forEachMember처럼 오래 걸리는 전체 조회가 실행 중이면 구간 교체가 그만큼 기다린다.
+ * - 단건 조회는 잠금 없이 읽고, 그 사이 링이 바뀌어 못 찾은 경우에만 다시 조회한다.
+ * - 복사가 실패하면 이미 복사한 행을 대상에서 지우고 예외를 던진다. 링은 그 직전 구간까지 옮겨진 상태로 일관되게 남으므로
+ *   같은 메서드를 다시 호출하거나(removeShard) 새 shard를 removeShard로 되돌릴 수 있다.
+ * - 링 교체 후 원본 삭제가 실패하면 지울 목록을 남겨두고 cleanUp()에서 다시 지운다. 정리될 때까지 집계/전체 조회는
+ *   중복 집계 대신 TransientDataAccessResourceException을 던진다.
+ * - 외부에서 shard DataSource에 직접 건 트랜잭션은 잠금 밖이므로, resharding은 그런 트랜잭션이 없을 때 실행해야 한다.
+ * - 새 shard의 DataSource에는 MEMBER 테이블이 미리 만들어져 있어야 한다.
+ */
+@Slf4j
+public class ShardedMemberRepository implements MemberRepository, AutoCloseable {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 64;
+
+    private static final String COPY_SQL =
+            "MERGE INTO MEMBER (MEMBER_ID, MONEY, VERSION) KEY (MEMBER_ID) VALUES (?, ?, ?)";
+    private static final int COPY_BATCH_SIZE = 1000;
+
+    private static final Comparator<Member> BY_MONEY_DESC =
+            Comparator.comparingInt(Member::getMoney).reversed().thenComparing(Member::getMemberId);
+    private static final Comparator<Member> BY_MEMBER_ID = Comparator.comparing(Member::getMemberId);
+    private static final Comparator<Vnode> BY_TOKEN = Comparator.comparingLong(vnode -> vnode.token);
+
+    private final int virtualNodes;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile HashRing ring;
+
+    // 구간 이동의 복사 -> 링 교체 -> 삭제는 쓰기 잠금, 집계/전체 조회는 읽기 잠금. 옮기는 도중의 중복/누락을 보지 않는다.
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    // 주인이 아닌데 아직 지우지 못한 행 (shard -> memberId)
+    private final Map<Shard, Set<String>> pendingCleanup = new ConcurrentHashMap<>();
+
+    private final LongAdder localTransfers = new LongAdder();
+    private final LongAdder crossShardTransfers = new LongAdder();
+    private final LongAdder compensations = new LongAdder();
+    private final LongAdder compensationFailures = new LongAdder();
+
+    public ShardedMemberRepository(Map<String, DataSource> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ShardedMemberRepository(Map<String, DataSource> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+        }
+        this.virtualNodes = virtualNodes;
+
+        List<Vnode> vnodes = new ArrayList<>();
+        for (Map.Entry<String, DataSource> entry : shards.entrySet()) {
+            vnodes.addAll(vnodes(new Shard(entry.getKey(), entry.getValue())));
+        }
+        this.ring = HashRing.EMPTY.with(vnodes);
+    }
+
+    @Override
+    public Member save(Member member) {
+        return write(member.getMemberId(), shard -> shard.repository.save(member));
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        while (true) {
+            HashRing snapshot = ring;
+            try {
+                return snapshot.route(memberId).repository.findById(memberId);
+            } catch (EmptyResultDataAccessException e) {
+                // 조회 도중 resharding으로 다른 shard로 옮겨졌을 수 있다.
+                if (snapshot == ring) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        write(memberId, shard -> {
+            shard.repository.update(memberId, money);
+            return null;
+        });
+    }
+
+    @Override
+    public void update(Member member) {
+        write(member.getMemberId(), shard -> {
+            shard.repository.update(member);
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(String memberId) {
+        write(memberId, shard -> {
+            shard.repository.delete(memberId);
+            return null;
+        });
+    }
+
+    @Override
+    public int adjustBalance(String memberId, int delta) {
+        return write(memberId, shard -> shard.repository.adjustBalance(memberId, delta));
+    }
+
+    @Override
+    public int[] adjustBalanceAll(Map<String, Integer> deltas) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(deltas.entrySet());
+        List<String> memberIds = entries.stream().map(Map.Entry::getKey).toList();
+        return writeBatch(memberIds, (shard, indexes) -> {
+            Map<String, Integer> part = new LinkedHashMap<>();
+            for (int index : indexes) {
+                part.put(entries.get(index).getKey(), entries.get(index).getValue());
+            }
+            return shard.repository.adjustBalanceAll(part);
+        });
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> memberIds) {
+        Map<String, Member> result = new HashMap<>();
+        Collection<String> pending = new LinkedHashSet<>(memberIds);
+
+        while (!pending.isEmpty()) {
+            HashRing snapshot = ring;
+            Map<Shard, List<String>> groups = new LinkedHashMap<>();
+            for (String memberId : pending) {
+                groups.computeIfAbsent(snapshot.route(memberId), shard -> new ArrayList<>()).add(memberId);
+            }
+            List<Shard> targets = new ArrayList<>(groups.keySet());
+            for (Map<String, Member> found : scatter(targets, shard -> shard.repository.findAllByIds(groups.get(shard)))) {
+                result.putAll(found);
+            }
+            if (snapshot == ring) {
+                break;
+            }
+            // 조회 도중 옮겨진 키 중 못 찾은 것만 새 주인에게 다시 조회한다.
+            HashRing current = ring;
+            pending = pending.stream()
+                    .filter(id -> !result.containsKey(id) && current.route(id) != snapshot.route(id))
+                    .toList();
+        }
+        return result;
+    }
+
+    /**
+     * shard마다 커서를 열고 이어 붙인다. Stream을 닫으면 모든 shard의 커서가 닫힌다.
+     * 다른 전체 조회와 달리 Stream이 열려 있는 동안 resharding을 막지 않는다.
+     * 시작 시점의 링 기준으로 각 shard의 주인인 회원만 내보내므로 중복은 없지만, 그 사이 옮겨진 회원은 빠질 수 있다.
+     */
+    @Override
+    public Stream<Member> streamAll() {
+        HashRing snapshot = ring;
+        Stream<Member> result = Stream.empty();
+        for (Shard shard : snapshot.shards) {
+            Stream<Member> members = shard.repository.streamAll()
+                    .filter(member -> snapshot.route(member.getMemberId()) == shard);
+            result = Stream.concat(result, members);
+        }
+        return result;
+    }
+
+    @Override
+    public void forEachMember(Consumer<Member> action) {
+        // action이 스레드 안전하지 않을 수 있으므로 shard를 순서대로 읽는다.
+        readAll(shards -> {
+            for (Shard shard : shards) {
+                shard.repository.forEachMember(action);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<Member> findPage(String afterMemberId, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        }
+        return readAll(shards -> merge(scatter(shards, shard -> shard.repository.findPage(afterMemberId, limit)),
+                BY_MEMBER_ID, limit));
+    }
+
+    @Override
+    public long totalMoney() {
+        return readAll(shards -> scatter(shards, shard -> shard.repository.totalMoney())
+                .stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Override
+    public List<Member> topByMoney(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative: " + n);
+        }
+        return readAll(shards -> merge(scatter(shards, shard -> shard.repository.topByMoney(n)), BY_MONEY_DESC, n));
+    }
+
+    @Override
+    public long countByMoneyRange(int from, int to) {
+        return readAll(shards -> scatter(shards, shard -> shard.repository.countByMoneyRange(from, to))
+                .stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Override
+    public SortedMap<Integer, Long> moneyHistogram(int bucketWidth) {
+        if (bucketWidth <= 0) {
+            throw new IllegalArgumentException("bucketWidth must be positive: " + bucketWidth);
+        }
+        return readAll(shards -> {
+            SortedMap<Integer, Long> histogram = new TreeMap<>();
+            for (SortedMap<Integer, Long> part : scatter(shards, shard -> shard.repository.moneyHistogram(bucketWidth))) {
+                part.forEach((bucket, count) -> histogram.merge(bucket, count, Long::sum));
+            }
+            return histogram;
+        });
+    }
+
+    @Override
+    public int[] saveAll(List<Member> members) {
+        return writeBatch(memberIds(members), (shard, indexes) -> shard.repository.saveAll(pick(members, indexes)));
+    }
+
+    @Override
+    public int[] updateAll(List<Member> members) {
+        return writeBatch(memberIds(members), (shard, indexes) -> shard.repository.updateAll(pick(members, indexes)));
+    }
+
+    @Override
+    public int[] deleteAll(List<String> memberIds) {
+        return writeBatch(memberIds, (shard, indexes) -> shard.repository.deleteAll(pick(memberIds, indexes)));
+    }
+
+    /**
+     * fromId에서 toId로 money를 이체한다. shard가 다르면 2단계 로컬 트랜잭션 + 보상 (클래스 주석 참고)
+     */
+    public void transfer(String fromId, String toId, int money) {
+        if (money <= 0) {
+            throw new IllegalArgumentException("이체 금액은 0보다 커야 합니다. money=" + money);
+        }
+
+        while (true) {
+            HashRing snapshot = ring;
+            Vnode fromNode = snapshot.vnode(fromId);
+            Vnode toNode = snapshot.vnode(toId);
+            if (fromNode.shard != toNode.shard) {
+                break;
+            }
+            List<Lock> locks = readLocks(Stream.of(fromNode, toNode).distinct().sorted(BY_TOKEN).toList());
+            try {
+                if (ring.vnode(fromId) == fromNode && ring.vnode(toId) == toNode) {
+                    Shard shard = fromNode.shard;
+                    try {
+                        shard.txTemplate.executeWithoutResult(status -> {
+                            withdraw(shard, fromId, money);
+                            deposit(shard, toId, money);
+                        });
+                    } finally {
+                        shard.track(List.of(fromId, toId));
+                    }
+                    localTransfers.increment();
+                    return;
+                }
+            } finally {
+                unlock(locks);
+            }
+        }
+
+        crossShardTransfers.increment();
+        write(fromId, from -> from.txTemplate.execute(status -> {
+            withdraw(from, fromId, money);
+            return null;
+        }));
+        try {
+            write(toId, to -> to.txTemplate.execute(status -> {
+                deposit(to, toId, money);
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            compensate(fromId, toId, money, e);
+            throw e;
+        }
+    }
+
+    private void withdraw(Shard shard, String fromId, int money) {
+        // 잔액 부족 검사는 WHERE 조건에서 처리되므로 영향받은 row 수로 판단한다.
+        if (shard.repository.adjustBalance(fromId, -money) == 0) {
+            throw new IllegalStateException("잔액 부족 또는 존재하지 않는 회원 fromId=" + fromId);
+        }
+    }
+
+    private void deposit(Shard shard, String toId, int money) {
+        if (shard.repository.adjustBalance(toId, money) == 0) {
+            throw new IllegalStateException("존재하지 않는 회원 toId=" + toId);
+        }
+    }
+
+    private void compensate(String fromId, String toId, int money, RuntimeException cause) {
+        compensations.increment();
+        log.info("cross-shard transfer failed, compensating fromId={}, toId={}, money={}", fromId, toId, money);
+        try {
+            write(fromId, from -> from.txTemplate.execute(status -> {
+                deposit(from, fromId, money);
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            compensationFailures.increment();
+            log.error("compensation failed, manual correction required fromId={}, money={}", fromId, money, e);
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * 새 shard를 추가하고, 링에서 새 shard가 가져갈 구간의 회원을 구간 하나씩 옮긴다.
+     *
+     * @return 옮긴 회원 수
+     */
+    public synchronized int addShard(String name, DataSource dataSource) {
+        HashRing original = ring;
+        if (original.contains(name)) {
+            throw new IllegalArgumentException("shard already exists: " + name);
+        }
+        List<Vnode> added = vnodes(new Shard(name, dataSource));
+        HashRing goal = original.with(added);
+
+        int moved = 0;
+        for (Shard source : original.shards) {
+            // 새 토큰 중 원래 source의 구간에 들어가는 것. 하나씩 링에 올릴 때마다 그 구간의 키만 새 shard로 넘어간다.
+            List<Function<HashRing, Step>> steps = added.stream()
+                    .filter(vnode -> original.owner(vnode.token).shard == source)
+                    .map(vnode -> (Function<HashRing, Step>) current ->
+                            new Step(current.owner(vnode.token), current.with(List.of(vnode))))
+                    .toList();
+            if (!steps.isEmpty()) {
+                moved += migrate(source, goal, steps);
+            }
+        }
+        log.info("shard added name={}, moved={}, shards={}", name, moved, getShardNames());
+        return moved;
+    }
+
+    /**
+     * shard의 토큰을 하나씩 링에서 빼면서 그 구간의 회원을 나머지 shard로 옮긴다. DataSource는 닫지 않는다.
+     *
+     * @return 옮긴 회원 수
+     */
+    public synchronized int removeShard(String name) {
+        HashRing original = ring;
+        Shard source = original.shards.stream()
+                .filter(shard -> shard.name.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("no such shard: " + name));
+        if (original.shards.size() == 1) {
+            throw new IllegalStateException("cannot remove the last shard: " + name);
+        }
+
+        // 다음 토큰도 source의 것이면 키는 source에 그대로 남고, 그 토큰을 뺄 때 함께 옮겨진다.
+        List<Function<HashRing, Step>> steps = original.vnodesOf(source).stream()
+                .map(vnode -> (Function<HashRing, Step>) current -> new Step(vnode, current.without(vnode)))
+                .toList();
+        int moved = migrate(source, original.without(source), steps);
+        log.info("shard removed name={}, moved={}, shards={}", name, moved, getShardNames());
+        return moved;
+    }
+
+    /**
+     * resharding 후 원본에서 지우지 못한 행을 다시 지운다. 집계/전체 조회 전에도 자동으로 호출된다.
+     *
+     * @return 아직 남아 있는 행 수
+     */
+    public synchronized int cleanUp() {
+        int remaining = 0;
+        for (Map.Entry<Shard, Set<String>> entry : pendingCleanup.entrySet()) {
+            Shard shard = entry.getKey();
+            HashRing current = ring;
+            // 그 사이 다시 이 shard의 주인이 된 키는 지우면 안 된다.
+            List<String> memberIds = entry.getValue().stream().filter(id -> current.route(id) != shard).toList();
+            try {
+                if (!memberIds.isEmpty()) {
+                    shard.txTemplate.executeWithoutResult(status -> shard.repository.deleteAll(memberIds));
+                }
+                pendingCleanup.remove(shard);
+                log.info("cleaned up {} moved members on shard={}", memberIds.size(), shard.name);
+            } catch (RuntimeException e) {
+                remaining += memberIds.size();
+                log.warn("cleanup failed shard={}, remaining={}", shard.name, memberIds.size(), e);
+            }
+        }
+        return remaining;
+    }
+
+    // source를 잠금 없이 한 번 훑어서 후보를 모은 뒤 구간 하나씩 옮긴다.
+    private int migrate(Shard source, HashRing goal, List<Function<HashRing, Step>> steps) {
+        // 훑기 전에 기록을 켜야 훑는 도중/이후에 쓰인 키가 빠지지 않는다.
+        source.startTracking();
+        try {
+            Set<String> candidates = new HashSet<>();
+            source.repository.forEachMember(member -> {
+                if (goal.route(member.getMemberId()) != source) {
+                    candidates.add(member.getMemberId());
+                }
+            });
+
+            int moved = 0;
+            for (Function<HashRing, Step> step : steps) {
+                moved += moveRange(step.apply(ring), candidates, source.tracked());
+            }
+            return moved;
+        } finally {
+            source.stopTracking();
+        }
+    }
+
+    // step.locked 구간 중 step.next에서 주인 shard가 바뀌는 키를 옮기고 링을 step.next로 바꾼다.
+    private int moveRange(Step step, Set<String> candidates, Set<String> tracked) {
+        HashRing current = ring;
+        Vnode locked = step.locked();
+        HashRing next = step.next();
+        Shard source = locked.shard;
+
+        Lock lock = locked.lock.writeLock();
+        lock.lock();
+        try {
+            List<String> memberIds = Stream.concat(candidates.stream(), tracked.stream())
+                    .distinct()
+                    .filter(id -> current.vnode(id) == locked && next.route(id) != source)
+                    .toList();
+            // 후보는 훑은 시점 기준이므로 잠근 뒤 현재 값을 다시 읽는다. 그 사이 삭제된 회원은 여기서 빠진다.
+            Map<String, Member> rows = memberIds.isEmpty() ? Map.of() : source.repository.findAllByIds(memberIds);
+            Map<Shard, List<Member>> moving = new LinkedHashMap<>();
+            for (Member member : rows.values()) {
+                moving.computeIfAbsent(next.route(member.getMemberId()), shard -> new ArrayList<>()).add(member);
+            }
+
+            Lock swap = swapLock.writeLock();
+            swap.lock();
+            try {
+                copyAll(moving);
+                // 복사가 끝난 뒤에 링을 바꾸므로 잠금 없이 읽는 단건 조회는 항상 어느 한쪽에서 회원을 찾는다.
+                ring = next;
+                deleteMoved(source, new ArrayList<>(rows.keySet()));
+            } finally {
+                swap.unlock();
+            }
+
+            if (!rows.isEmpty()) {
+                log.debug("moved {} members from shard={} to {}", rows.size(), source.name,
+                        moving.entrySet().stream().map(e -> e.getKey().name + "=" + e.getValue().size()).toList());
+            }
+            return rows.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 대상별로 한 트랜잭션씩 복사한다. 중간에 실패하면 먼저 커밋된 대상에서 지워서 주인이 아닌 행을 남기지 않는다.
+    private void copyAll(Map<Shard, List<Member>> moving) {
+        List<Shard> copied = new ArrayList<>();
+        try {
+            for (Map.Entry<Shard, List<Member>> entry : moving.entrySet()) {
+                // 실패한 대상은 롤백되지만, 함께 지워도 무해하므로 먼저 목록에 넣는다.
+                copied.add(entry.getKey());
+                copy(entry.getKey(), entry.getValue());
+            }
+        } catch (RuntimeException e) {
+            for (Shard target : copied) {
+                List<String> memberIds = memberIds(moving.get(target));
+                try {
+                    target.txTemplate.executeWithoutResult(status -> target.repository.deleteAll(memberIds));
+                } catch (RuntimeException cleanupFailure) {
+                    pendingCleanup.computeIfAbsent(target, shard -> ConcurrentHashMap.newKeySet()).addAll(memberIds);
+                    e.addSuppressed(cleanupFailure);
+                }
+            }
+            throw e;
+        }
+    }
+
+    // 이전에 중단된 이동으로 남은 행이 있어도 덮어쓰도록 MERGE를 쓴다. 낙관적 락이 깨지지 않도록 VERSION도 옮긴다.
+    private void copy(Shard target, List<Member> members) {
+        target.txTemplate.executeWithoutResult(status ->
+                target.template.batchUpdate(COPY_SQL, members, COPY_BATCH_SIZE, (ps, member) -> {
+                    ps.setString(1, member.getMemberId());
+                    ps.setInt(2, member.getMoney());
+                    ps.setLong(3, member.getVersion());
+                }));
+    }
+
+    // 링은 이미 바뀌었으므로 실패해도 되돌리지 않고 정리 목록에 남긴다.
+    private void deleteMoved(Shard source, List<String> memberIds) {
+        if (memberIds.isEmpty()) {
+            return;
+        }
+        try {
+            source.txTemplate.executeWithoutResult(status -> source.repository.deleteAll(memberIds));
+        } catch (RuntimeException e) {
+            pendingCleanup.computeIfAbsent(source, shard -> ConcurrentHashMap.newKeySet()).addAll(memberIds);
+            log.warn("moved members could not be deleted from shard={}, count={}", source.name, memberIds.size(), e);
+        }
+    }
+
+    /**
+     * memberId가 저장될 shard 이름
+     */
+    public String shardOf(String memberId) {
+        return ring.route(memberId).name;
+    }
+
+    public List<String> getShardNames() {
+        return ring.shards.stream().map(shard -> shard.name).toList();
+    }
+
+    /**
+     * 주인이 아닌 shard에 남아 있어 cleanUp()을 기다리는 행 수
+     */
+    public int getPendingCleanupCount() {
+        return pendingCleanup.values().stream().mapToInt(Set::size).sum();
+    }
+
+    public long getLocalTransferCount() {
+        return localTransfers.sum();
+    }
+
+    public long getCrossShardTransferCount() {
+        return crossShardTransfers.sum();
+    }
+
+    public long getCompensationCount() {
+        return compensations.sum();
+    }
+
+    public long getCompensationFailureCount() {
+        return compensationFailures.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    // 주인 구간의 읽기 잠금을 잡고 실행한다. 잠금을 기다리는 사이 구간이 옮겨졌으면 새 주인에게 다시 시도한다.
+    private <T> T write(String memberId, Function<Shard, T> action) {
+        while (true) {
+            Vnode vnode = ring.vnode(memberId);
+            Lock lock = vnode.lock.readLock();
+            lock.lock();
+            try {
+                if (ring.vnode(memberId) == vnode) {
+                    try {
+                        return action.apply(vnode.shard);
+                    } finally {
+                        vnode.shard.track(memberId);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // 입력을 shard별로 나눠서 실행하고, 결과를 입력 순서대로 합친다.
+    private int[] writeBatch(List<String> memberIds, BiFunction<Shard, List<Integer>, int[]> action) {
+        int[] result = new int[memberIds.size()];
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < memberIds.size(); i++) {
+            pending.add(i);
+        }
+
+        while (!pending.isEmpty()) {
+            HashRing snapshot = ring;
+            Map<Shard, List<Integer>> groups = new LinkedHashMap<>();
+            for (int index : pending) {
+                groups.computeIfAbsent(snapshot.route(memberIds.get(index)), shard -> new ArrayList<>()).add(index);
+            }
+
+            List<Integer> retry = new ArrayList<>();
+            for (Map.Entry<Shard, List<Integer>> entry : groups.entrySet()) {
+                Shard shard = entry.getKey();
+                List<Vnode> vnodes = entry.getValue().stream()
+                        .map(index -> snapshot.vnode(memberIds.get(index)))
+                        .distinct()
+                        .sorted(BY_TOKEN)
+                        .toList();
+                List<Lock> locks = readLocks(vnodes);
+                try {
+                    HashRing current = ring;
+                    List<Integer> owned = new ArrayList<>();
+                    for (int index : entry.getValue()) {
+                        String memberId = memberIds.get(index);
+                        (current.vnode(memberId) == snapshot.vnode(memberId) ? owned : retry).add(index);
+                    }
+                    if (!owned.isEmpty()) {
+                        try {
+                            int[] counts = action.apply(shard, owned);
+                            for (int i = 0; i < owned.size(); i++) {
+                                result[owned.get(i)] = counts[i];
+                            }
+                        } finally {
+                            shard.track(pick(memberIds, owned));
+                        }
+                    }
+                } finally {
+                    unlock(locks);
+                }
+            }
+            pending = retry;
+        }
+        return result;
+    }
+
+    // 구간 교체가 끝날 때까지 기다렸다가, 링이 바뀌지 않는 동안 실행한다.
+    private <T> T readAll(Function<List<Shard>, T> action) {
+        if (!pendingCleanup.isEmpty()) {
+            cleanUp();
+        }
+        Lock lock = swapLock.readLock();
+        lock.lock();
+        try {
+            HashRing current = ring;
+            List<String> stale = current.shards.stream()
+                    .filter(pendingCleanup::containsKey)
+                    .map(shard -> shard.name)
+                    .toList();
+            if (!stale.isEmpty()) {
+                // 정리되지 않은 행을 함께 세면 결과가 틀리므로 조회하지 않는다.
+                throw new TransientDataAccessResourceException("moved members are not yet deleted from shards=" + stale);
+            }
+            return action.apply(current.shards);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 토큰 순서대로 잠근다.
+    private static List<Lock> readLocks(List<Vnode> vnodes) {
+        List<Lock> locks = new ArrayList<>(vnodes.size());
+        for (Vnode vnode : vnodes) {
+            Lock lock = vnode.lock.readLock();
+            lock.lock();
+            locks.add(lock);
+        }
+        return locks;
+    }
+
+    private static void unlock(List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    // shard별로 동시에 실행하고 shards 순서대로 결과를 돌려준다.
+    private <T> List<T> scatter(List<Shard> shards, Function<Shard, T> task) {
+        List<T> results = new ArrayList<>(shards.size());
+        if (shards.size() == 1 || TransactionSynchronizationManager.isSynchronizationActive()) {
+            for (Shard shard : shards) {
+                results.add(task.apply(shard));
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            futures.add(executor.submit(() -> task.apply(shard)));
+        }
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private static List<Member> merge(List<List<Member>> parts, Comparator<Member> order, int limit) {
+        return parts.stream()
+                .flatMap(List::stream)
+                .sorted(order)
+                .limit(Math.max(0, limit))
+                .toList();
+    }
+
+    private static List<String> memberIds(List<Member> members) {
+        return members.stream().map(Member::getMemberId).toList();
+    }
+
+    private static <T> List<T> pick(List<T> items, List<Integer> indexes) {
+        List<T> picked = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            picked.add(items.get(index));
+        }
+        return picked;
+    }
+
+    private List<Vnode> vnodes(Shard shard) {
+        List<Vnode> vnodes = new ArrayList<>(virtualNodes);
+        for (int i = 0; i < virtualNodes; i++) {
+            vnodes.add(new Vnode(hash(shard.name + "#" + i), shard));
+        }
+        return vnodes;
+    }
+
+    /**
+     * FNV-1a 64 + murmur3 fmix64
+     * FNV-1a만으로는 "member1", "member2"처럼 끝만 다른 키가 링의 가까운 위치에 몰린다.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb99ec8539e53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 구간 이동 한 번: locked 구간을 잠그고 링을 next로 바꾼다.
+     */
+    private record Step(Vnode locked, HashRing next) {
+    }
+
+    private static final class Shard {
+
+        private final String name;
+        private final MemberRepository repository;
+        private final JdbcTemplate template;
+        private final TransactionTemplate txTemplate;
+        // resharding으로 이 shard를 훑는 동안 쓰인 memberId. 평소에는 null
+        private volatile Set<String> tracked;
+
+        private Shard(String name, DataSource dataSource) {
+            this.name = name;
+            this.repository = new MemberRepositoryV5(dataSource);
+            this.template = new JdbcTemplate(dataSource);
+            this.txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        }
+
+        private void startTracking() {
+            tracked = ConcurrentHashMap.newKeySet();
+        }
+
+        private void stopTracking() {
+            tracked = null;
+        }
+
+        private Set<String> tracked() {
+            Set<String> current = tracked;
+            return current == null ? Set.of() : current;
+        }
+
+        private void track(String memberId) {
+            Set<String> current = tracked;
+            if (current != null) {
+                current.add(memberId);
+            }
+        }
+
+        private void track(Collection<String> memberIds) {
+            Set<String> current = tracked;
+            if (current != null) {
+                current.addAll(memberIds);
+            }
+        }
+    }
+
+    /**
+     * 가상 노드. 링에서 이전 토큰 다음부터 token까지의 구간을 맡는다.
+     */
+    private static final class Vnode {
+
+        private final long token;
+        private final Shard shard;
+        // 이 구간에 대한 쓰기: 읽기 잠금(공유), resharding으로 이 구간을 옮기는 동안: 쓰기 잠금
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private Vnode(long token, Shard shard) {
+            this.token = token;
+            this.shard = shard;
+        }
+    }
+
+    /**
+     * 불변 해시 링. 바꿀 때는 새 링을 만들어 volatile 필드를 교체한다.
+     */
+    private static final class HashRing {
+
+        private static final HashRing EMPTY = new HashRing(new TreeMap<>());
+
+        private final NavigableMap<Long, Vnode> tokens;
+        // 이름 순
+        private final List<Shard> shards;
+
+        private HashRing(NavigableMap<Long, Vnode> tokens) {
+            this.tokens = tokens;
+            this.shards = tokens.values().stream()
+                    .map(vnode -> vnode.shard)
+                    .distinct()
+                    .sorted(Comparator.comparing((Shard shard) -> shard.name))
+                    .toList();
+        }
+
+        Vnode vnode(String memberId) {
+            return owner(hash(memberId));
+        }
+
+        Shard route(String memberId) {
+            return vnode(memberId).shard;
+        }
+
+        // 해시 값 다음(같거나 큰)에 오는 토큰. 끝을 넘으면 처음으로 돌아간다.
+        Vnode owner(long hash) {
+            Map.Entry<Long, Vnode> entry = tokens.ceilingEntry(hash);
+            return (entry != null ? entry : tokens.firstEntry()).getValue();
+        }
+
+        boolean contains(String name) {
+            return shards.stream().anyMatch(shard -> shard.name.equals(name));
+        }
+
+        List<Vnode> vnodesOf(Shard shard) {
+            return tokens.values().stream().filter(vnode -> vnode.shard == shard).toList();
+        }
+
+        HashRing with(List<Vnode> added) {
+            TreeMap<Long, Vnode> next = new TreeMap<>(tokens);
+            for (Vnode vnode : added) {
+                next.put(vnode.token, vnode);
+            }
+            return new HashRing(next);
+        }
+
+        HashRing without(Vnode vnode) {
+            TreeMap<Long, Vnode> next = new TreeMap<>(tokens);
+            next.remove(vnode.token, vnode);
+            return new HashRing(next);
+        }
+
+        HashRing without(Shard shard) {
+            TreeMap<Long, Vnode> next = new TreeMap<>(tokens);
+            next.values().removeIf(vnode -> vnode.shard == shard);
+            return new HashRing(next);
+        }
+    }
+
+}
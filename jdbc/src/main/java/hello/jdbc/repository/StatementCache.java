@@ -0,0 +1,144 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection + SQL 단위 PreparedStatement 캐시
+ *
+ * 트랜잭션 동기화 중에는 DataSourceUtils가 같은 Connection을 계속 돌려주므로, 같은 SQL의 PreparedStatement를
+ * 다시 만들지 않고 재사용한다. 캐시는 트랜잭션에 바인딩되고, 트랜잭션이 끝나 Connection이 풀에 반납되기 전에 모두 닫힌다.
+ * 트랜잭션 밖에서는 호출마다 Connection이 반납되므로 캐시하지 않는다.
+ */
+@Slf4j
+public class StatementCache {
+
+    public static final int DEFAULT_MAX_SIZE = 16;
+
+    // Connection 하나당 캐시할 최대 Statement 수, 0이면 캐시 사용 안 함
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StatementCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public StatementCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    public static StatementCache disabled() {
+        return new StatementCache(0);
+    }
+
+    public PreparedStatement prepareStatement(Connection con, String sql) throws SQLException {
+        if (maxSize == 0 || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return con.prepareStatement(sql);
+        }
+
+        CachedStatements statements = (CachedStatements) TransactionSynchronizationManager.getResource(this);
+        if (statements == null) {
+            statements = new CachedStatements();
+            TransactionSynchronizationManager.bindResource(this, statements);
+            TransactionSynchronizationManager.registerSynchronization(statements);
+        }
+        return statements.get(con, sql);
+    }
+
+    /**
+     * 캐시된 Statement는 트랜잭션이 끝날 때 닫히므로 그대로 두고, 캐시되지 않은 Statement만 닫는다.
+     */
+    public void release(Statement stmt) {
+        if (stmt == null) {
+            return;
+        }
+        CachedStatements statements = maxSize == 0 ? null : (CachedStatements) TransactionSynchronizationManager.getResource(this);
+        if (statements == null || !statements.contains(stmt)) {
+            JdbcUtils.closeStatement(stmt);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 트랜잭션 하나에서 사용하는 Connection별 Statement 캐시 (LRU)
+     */
+    private class CachedStatements implements TransactionSynchronization {
+
+        private final Map<Connection, Map<String, PreparedStatement>> byConnection = new IdentityHashMap<>();
+        private final Set<Statement> cached = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        PreparedStatement get(Connection con, String sql) throws SQLException {
+            Map<String, PreparedStatement> statements = byConnection.computeIfAbsent(con, key -> lruMap());
+
+            PreparedStatement pstmt = statements.get(sql);
+            if (pstmt != null && !pstmt.isClosed()) {
+                hits.increment();
+                return pstmt;
+            }
+
+            misses.increment();
+            pstmt = con.prepareStatement(sql);
+            statements.put(sql, pstmt);
+            cached.add(pstmt);
+            return pstmt;
+        }
+
+        boolean contains(Statement stmt) {
+            return cached.contains(stmt);
+        }
+
+        private Map<String, PreparedStatement> lruMap() {
+            return new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > maxSize) {
+                        cached.remove(eldest.getValue());
+                        JdbcUtils.closeStatement(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        // DataSourceUtils의 ConnectionSynchronization보다 먼저 실행되어야 Connection이 반납되기 전에 Statement를 닫을 수 있다.
+        @Override
+        public int getOrder() {
+            return DataSourceUtils.CONNECTION_SYNCHRONIZATION_ORDER - 1;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(StatementCache.this);
+            log.debug("close cached statements count={}", cached.size());
+            for (Statement stmt : cached) {
+                JdbcUtils.closeStatement(stmt);
+            }
+            cached.clear();
+            byConnection.clear();
+        }
+    }
+
+}
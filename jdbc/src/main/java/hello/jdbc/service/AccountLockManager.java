@@ -0,0 +1,156 @@
+package hello.jdbc.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 회원 ID 해시로 나눈 striped lock
+ *
+ * 같은 회원을 건드리는 이체는 DB 커넥션을 잡기 전에 JVM 안에서 줄을 서고,
+ * 서로 다른 회원의 이체는 다른 stripe를 사용하므로 병렬로 진행된다.
+ * 두 stripe는 항상 번호 순으로 잡으므로 반대 방향 이체끼리 교착 상태에 빠지지 않는다.
+ * (서로 다른 회원이 같은 stripe에 걸리면 불필요하게 기다릴 수 있다. stripe 수를 늘리면 줄어든다.)
+ */
+@Slf4j
+public class AccountLockManager {
+
+    public static final int DEFAULT_STRIPES = 256;
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    public AccountLockManager() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes 2의 거듭제곱으로 올림해서 사용한다.
+     */
+    public AccountLockManager(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe(i);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * 두 회원의 lock을 정해진 순서로 잡은 상태에서 action을 실행한다.
+     */
+    public void runLocked(String fromId, String toId, Runnable action) {
+        Stripe first = stripeOf(fromId);
+        Stripe second = stripeOf(toId);
+        if (first.index > second.index) {
+            Stripe temp = first;
+            first = second;
+            second = temp;
+        }
+
+        first.lock();
+        try {
+            if (second != first) {
+                second.lock();
+            }
+            try {
+                action.run();
+            } finally {
+                if (second != first) {
+                    second.lock.unlock();
+                }
+            }
+        } finally {
+            first.lock.unlock();
+        }
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    public Stripe getStripe(String memberId) {
+        return stripeOf(memberId);
+    }
+
+    /**
+     * 한 번이라도 경합이 있었던 stripe 목록
+     */
+    public List<Stripe> getContendedStripes() {
+        List<Stripe> result = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            if (stripe.getContendedCount() > 0) {
+                result.add(stripe);
+            }
+        }
+        return result;
+    }
+
+    private Stripe stripeOf(String memberId) {
+        int h = memberId.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    /**
+     * stripe 하나와 경합 지표
+     * - acquisitions: lock 획득 횟수
+     * - contended: 바로 얻지 못하고 기다린 횟수
+     * - waitNanos: 기다린 시간의 합
+     */
+    public static class Stripe {
+
+        private final int index;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder contended = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+
+        Stripe(int index) {
+            this.index = index;
+        }
+
+        void lock() {
+            if (!lock.tryLock()) {
+                contended.increment();
+                long start = System.nanoTime();
+                lock.lock();
+                waitNanos.add(System.nanoTime() - start);
+            }
+            acquisitions.increment();
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getAcquisitionCount() {
+            return acquisitions.sum();
+        }
+
+        public long getContendedCount() {
+            return contended.sum();
+        }
+
+        public long getWaitNanos() {
+            return waitNanos.sum();
+        }
+
+        public int getQueueLength() {
+            return lock.getQueueLength();
+        }
+
+        @Override
+        public String toString() {
+            return "stripe[" + index + "] acquisitions=" + getAcquisitionCount()
+                    + ", contended=" + getContendedCount()
+                    + ", wait=" + getWaitNanos() / 1000 + "us";
+        }
+    }
+
+}
@@ -0,0 +1,242 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.LatencyHistogram;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 그룹 커밋 이체
+ *
+ * 여러 스레드에서 제출한 이체를 모아서(최대 maxBatchSize 건 또는 첫 요청 이후 maxDelay 동안) 트랜잭션 하나로 커밋한다.
+ * 커밋(로그 flush) 비용을 그룹 안의 이체들이 나누어 내므로 부하가 높을수록 건당 비용이 줄어든다.
+ *
+ * 이체마다 savepoint를 잡아서 실패한 이체만 savepoint로 롤백하고 나머지는 그대로 커밋한다.
+ * 호출자의 future는 커밋이 끝난 뒤에 건별로 완료된다. 커밋 자체가 실패하면 그룹의 모든 future가 예외로 완료된다.
+ * 그룹은 전용 스레드 하나가 순서대로 처리하므로 그룹끼리 락을 두고 경합하지 않는다.
+ */
+@Slf4j
+public class GroupCommitTransferService implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    public static final Duration DEFAULT_MAX_DELAY = Duration.ofNanos(500_000); // 500us
+
+    private final TransactionTemplate txTemplate;
+    // 이체 규칙은 MemberServiceV4를 그대로 쓴다.
+    // 프록시가 아닌 객체라서 @Transactional이 적용되지 않고, 예외가 나도 그룹 트랜잭션이 rollback-only로 표시되지 않는다.
+    private final MemberServiceV4 transferLogic;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private volatile boolean running = true;
+    // submit(읽기)의 running 확인과 queue 추가를 close(쓰기)와 원자적으로 묶는다.
+    // close가 running을 내린 뒤에는 어떤 요청도 queue에 들어오지 않으므로 committer의 마지막 drain에서 빠지는 요청이 없다.
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    // batchSizes[n] = 크기가 n인 그룹 수
+    private final AtomicLongArray batchSizes;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder transfers = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public GroupCommitTransferService(PlatformTransactionManager transactionManager, MemberRepository memberRepository) {
+        this(transactionManager, memberRepository, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY);
+    }
+
+    public GroupCommitTransferService(PlatformTransactionManager transactionManager, MemberRepository memberRepository,
+                                      int maxBatchSize, Duration maxDelay) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.transferLogic = new MemberServiceV4(memberRepository);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.batchSizes = new AtomicLongArray(maxBatchSize + 1);
+
+        this.committer = new Thread(this::run, "group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    public CompletableFuture<TransferResult> submit(String fromId, String toId, int money) {
+        return submit(new Transfer(fromId, toId, money));
+    }
+
+    public CompletableFuture<TransferResult> submit(Transfer transfer) {
+        closeLock.readLock().lock();
+        try {
+            if (!running) {
+                return CompletableFuture.failedFuture(new IllegalStateException("group commit service is closed"));
+            }
+            Pending pending = new Pending(transfer, new CompletableFuture<>(), System.nanoTime());
+            queue.add(pending);
+            return pending.future;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    private void run() {
+        List<Pending> group = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (!group.isEmpty()) {
+                commit(group);
+                group.clear();
+            }
+        }
+        // 종료 직전에 들어온 요청
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new IllegalStateException("group commit service is closed"));
+        }
+    }
+
+    // 첫 요청이 올 때까지 기다린 다음, 가득 차거나 maxDelay가 지날 때까지 모은다.
+    private void collect(List<Pending> group) throws InterruptedException {
+        Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        group.add(first);
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (group.size() < maxBatchSize) {
+            queue.drainTo(group, maxBatchSize - group.size());
+            long remaining = deadline - System.nanoTime();
+            if (group.size() >= maxBatchSize || remaining <= 0) {
+                break;
+            }
+            Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            group.add(next);
+        }
+    }
+
+    private void commit(List<Pending> group) {
+        batches.increment();
+        batchSizes.incrementAndGet(group.size());
+        transfers.add(group.size());
+
+        List<TransferResult> results;
+        try {
+            results = txTemplate.execute(status -> transferGroup(status, group));
+        } catch (RuntimeException e) {
+            log.info("group commit failed size={}", group.size(), e);
+            for (Pending pending : group) {
+                complete(pending, null, e);
+            }
+            return;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            complete(group.get(i), results.get(i), null);
+        }
+    }
+
+    private List<TransferResult> transferGroup(TransactionStatus status, List<Pending> group) {
+        List<TransferResult> results = new ArrayList<>(group.size());
+        for (Pending pending : group) {
+            Transfer transfer = pending.transfer;
+            Object savepoint = status.createSavepoint();
+            try {
+                transferLogic.accountTransfer(transfer.fromId(), transfer.toId(), transfer.money());
+                status.releaseSavepoint(savepoint);
+                results.add(TransferResult.success(transfer));
+            } catch (RuntimeException e) {
+                // 검증 실패뿐 아니라 DataAccessException(제약 조건 위반 등)도 이 이체의 변경만 되돌리고 그룹은 계속 진행한다.
+                // savepoint 롤백 자체가 실패하면(커넥션 끊김 등) 예외가 그대로 올라가서 그룹 전체가 롤백된다.
+                log.debug("transfer failed {}", transfer, e);
+                status.rollbackToSavepoint(savepoint);
+                results.add(TransferResult.failure(transfer, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    private void complete(Pending pending, TransferResult result, Throwable error) {
+        latency.record(System.nanoTime() - pending.submittedAt);
+        if (error != null) {
+            pending.future.completeExceptionally(error);
+        } else {
+            pending.future.complete(result);
+        }
+    }
+
+    /**
+     * 그룹 크기 -> 그룹 수 (그룹이 한 번도 없었던 크기는 제외)
+     */
+    public Map<Integer, Long> getBatchSizeDistribution() {
+        Map<Integer, Long> distribution = new TreeMap<>();
+        for (int size = 1; size <= maxBatchSize; size++) {
+            long count = batchSizes.get(size);
+            if (count > 0) {
+                distribution.put(size, count);
+            }
+        }
+        return distribution;
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public double getMeanBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) transfers.sum() / count;
+    }
+
+    /**
+     * 제출 ~ future 완료 시간
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * 새 요청을 받지 않고, 대기 중인 요청을 모두 커밋한 뒤 종료한다.
+     */
+    @Override
+    public void close() {
+        // JDBC 작업 중인 스레드를 interrupt 하지 않고, poll 타임아웃마다 running을 확인해서 스스로 끝나게 한다.
+        closeLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Pending(Transfer transfer, CompletableFuture<TransferResult> future, long submittedAt) {
+    }
+
+}
@@ -0,0 +1,231 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * MemberServiceV4 비동기 facade
+ *
+ * 호출 스레드를 막지 않고 DB 전용 실행기에서 이체/조회를 실행한 뒤 CompletableFuture로 돌려준다.
+ * 트랜잭션 프록시(@Transactional)는 작업 스레드 안에서 호출되므로, 트랜잭션 시작 ~ 커밋과
+ * DataSourceUtils가 ThreadLocal에 바인딩하는 커넥션이 모두 같은 작업 스레드에 머문다.
+ * 따라서 memberService는 반드시 트랜잭션 AOP가 적용된 프록시를 넘겨야 한다.
+ *
+ * 실행기는 스레드 수와 대기열 크기가 고정되어 있어서, DB가 느려지면 무한히 쌓이지 않고 거절 정책이 동작한다.
+ * 기본 거절 정책은 AbortPolicy이고 거절된 요청은 RejectedExecutionException으로 실패한 future가 된다.
+ * CallerRunsPolicy를 쓰면 호출 스레드에서 트랜잭션이 실행되므로 호출자 쪽에 자연스럽게 배압이 걸린다.
+ * DiscardPolicy / DiscardOldestPolicy처럼 작업을 조용히 버리는 정책이면 버려진 작업의 future를
+ * RejectedExecutionException으로 실패시킨다. (그대로 두면 future가 영원히 완료되지 않는다)
+ */
+@Slf4j
+public class MemberAsyncService implements MeterBinder, AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    private final MemberServiceV4 memberService;
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param threads 보통 커넥션 풀 크기와 맞춘다. 더 많아도 커넥션을 기다릴 뿐이다.
+     */
+    public MemberAsyncService(MemberServiceV4 memberService, int threads) {
+        this(memberService, threads, DEFAULT_QUEUE_CAPACITY, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public MemberAsyncService(MemberServiceV4 memberService, int threads, int queueCapacity,
+                              RejectedExecutionHandler rejectionPolicy) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+        }
+        this.memberService = memberService;
+        this.queueCapacity = queueCapacity;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new DbThreadFactory(), new CountingRejectionHandler(rejectionPolicy));
+    }
+
+    public CompletableFuture<Void> accountTransferAsync(String fromId, String toId, int money) {
+        return submit(() -> {
+            memberService.accountTransfer(fromId, toId, money);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Member> findByIdAsync(String memberId) {
+        return submit(() -> memberService.findById(memberId));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+        DbTask<T> task = new DbTask<>(supplier);
+        try {
+            executor.execute(task);
+            return task.future;
+        } catch (RejectedExecutionException e) {
+            // 호출 스레드에서 예외를 던지지 않고 future로 실패를 전달한다.
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 실행을 기다리는 작업 수
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public String getRejectionPolicy() {
+        return ((CountingRejectionHandler) executor.getRejectedExecutionHandler()).delegate.getClass().getSimpleName();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("db.executor.queue.depth", this, MemberAsyncService::getQueueDepth)
+                .description("tasks waiting for a DB worker thread")
+                .register(registry);
+        Gauge.builder("db.executor.queue.capacity", this, MemberAsyncService::getQueueCapacity)
+                .register(registry);
+        Gauge.builder("db.executor.active", this, MemberAsyncService::getActiveCount)
+                .description("DB worker threads running a task")
+                .register(registry);
+        Gauge.builder("db.executor.rejected", rejected, LongAdder::sum)
+                .description("tasks rejected by the DB executor")
+                .tag("policy", getRejectionPolicy())
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("db executor did not terminate queued={}", getQueueDepth());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class CountingRejectionHandler implements RejectedExecutionHandler {
+
+        private final RejectedExecutionHandler delegate;
+
+        CountingRejectionHandler(RejectedExecutionHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            rejected.increment();
+            log.debug("db executor rejected task queued={}, policy={}", executor.getQueue().size(),
+                    delegate.getClass().getSimpleName());
+
+            // 작업을 버리는 정책은 직접 구현해서 버린 작업을 정확히 알고 실패시킨다.
+            // (위임한 뒤 대기열을 보고 추측하면, 그 사이 작업 스레드가 꺼내 간 작업과 구분할 수 없다)
+            if (delegate instanceof ThreadPoolExecutor.DiscardOldestPolicy) {
+                if (executor.isShutdown()) {
+                    fail(r);
+                    return;
+                }
+                fail(executor.getQueue().poll());
+                executor.execute(r);
+            } else if (delegate instanceof ThreadPoolExecutor.DiscardPolicy) {
+                fail(r);
+            } else {
+                delegate.rejectedExecution(r, executor);
+                // CallerRunsPolicy는 종료된 실행기에서 작업을 조용히 버린다.
+                if (executor.isShutdown()) {
+                    fail(r);
+                }
+            }
+        }
+
+        private void fail(Runnable r) {
+            if (r instanceof DbTask<?> task) {
+                task.reject(new RejectedExecutionException("discarded by " + delegate.getClass().getSimpleName()));
+            }
+        }
+    }
+
+    /**
+     * 실행과 거절 중 먼저 차지한 쪽만 future를 완료한다.
+     * (CallerRunsPolicy가 이미 실행한 작업은 거절 처리가 다시 실패시키지 않는다)
+     */
+    private static final class DbTask<T> implements Runnable {
+
+        private final Supplier<T> supplier;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        DbTask(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        void reject(RejectedExecutionException e) {
+            if (claimed.compareAndSet(false, true)) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class DbThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "db-worker-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
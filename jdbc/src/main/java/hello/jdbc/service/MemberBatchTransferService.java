@@ -0,0 +1,126 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * 대량 이체 - accountTransferAll
+ *
+ * chunkSize 만큼의 이체를 트랜잭션 하나로 처리한다.
+ * 1. chunk에 등장하는 회원의 잔액을 findAllByIds()로 한 번에 조회
+ * 2. 요청 순서대로 메모리에서 이체를 적용해 보며 건별 성공/실패를 판정 (회원 없음, 잔액 부족, 검증 실패)
+ * 3. 성공한 이체만 회원별 증감액으로 합산해서 adjustBalanceAll()로 한 번에 반영
+ *
+ * 3번에서 WHERE 조건(MONEY + ? >= 0)에 걸리면 조회 이후 다른 트랜잭션이 잔액을 바꾼 것이므로 chunk 전체를 롤백하고 실패로 돌려준다.
+ * DB 예외(DataAccessException)가 나도 마찬가지로 그 chunk만 실패 처리한다.
+ */
+@Slf4j
+public class MemberBatchTransferService {
+
+    private final TransactionTemplate txTemplate;
+    private final MemberRepository memberRepository;
+    private final int chunkSize;
+
+    public MemberBatchTransferService(PlatformTransactionManager transactionManager, MemberRepository memberRepository) {
+        this(transactionManager, memberRepository, Integer.MAX_VALUE);
+    }
+
+    public MemberBatchTransferService(PlatformTransactionManager transactionManager, MemberRepository memberRepository, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.memberRepository = memberRepository;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return transfers와 같은 순서의 건별 처리 결과
+     */
+    public List<TransferResult> accountTransferAll(List<Transfer> transfers) {
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        for (int from = 0; from < transfers.size(); from += chunkSize) {
+            List<Transfer> chunk = transfers.subList(from, (int) Math.min((long) from + chunkSize, transfers.size()));
+            try {
+                results.addAll(txTemplate.execute(status -> transferChunk(chunk)));
+            } catch (RuntimeException e) {
+                // DataAccessException도 이 chunk만 실패로 돌려주고, 앞 chunk의 결과는 유지한 채 다음 chunk를 계속 처리한다.
+                log.info("chunk rollback size={}, reason={}", chunk.size(), e.getMessage());
+                for (Transfer transfer : chunk) {
+                    results.add(TransferResult.failure(transfer, e.getMessage()));
+                }
+            }
+        }
+        return results;
+    }
+
+    private List<TransferResult> transferChunk(List<Transfer> chunk) {
+        Set<String> memberIds = new HashSet<>();
+        for (Transfer transfer : chunk) {
+            memberIds.add(transfer.fromId());
+            memberIds.add(transfer.toId());
+        }
+
+        Map<String, Integer> balances = new HashMap<>();
+        for (Member member : memberRepository.findAllByIds(memberIds).values()) {
+            balances.put(member.getMemberId(), member.getMoney());
+        }
+
+        // 회원 ID 순으로 정렬해서 UPDATE 순서를 고정한다. (트랜잭션 간 교착 상태 방지)
+        Map<String, Integer> deltas = new TreeMap<>();
+        List<TransferResult> results = new ArrayList<>(chunk.size());
+
+        for (Transfer transfer : chunk) {
+            String failureReason = check(transfer, balances);
+            if (failureReason != null) {
+                results.add(TransferResult.failure(transfer, failureReason));
+                continue;
+            }
+            balances.merge(transfer.fromId(), -transfer.money(), Integer::sum);
+            balances.merge(transfer.toId(), transfer.money(), Integer::sum);
+            deltas.merge(transfer.fromId(), -transfer.money(), Integer::sum);
+            deltas.merge(transfer.toId(), transfer.money(), Integer::sum);
+            results.add(TransferResult.success(transfer));
+        }
+
+        deltas.values().removeIf(delta -> delta == 0);
+        if (!deltas.isEmpty()) {
+            int[] counts = memberRepository.adjustBalanceAll(deltas);
+            for (int count : counts) {
+                if (count == 0) {
+                    throw new IllegalStateException("잔액이 변경되어 일괄 이체 실패");
+                }
+            }
+        }
+        return results;
+    }
+
+    private String check(Transfer transfer, Map<String, Integer> balances) {
+        if (transfer.money() <= 0) {
+            return "이체 금액은 0보다 커야 합니다.";
+        }
+        if (transfer.fromId().equals(transfer.toId())) {
+            return "같은 회원에게 이체할 수 없습니다.";
+        }
+        Integer fromMoney = balances.get(transfer.fromId());
+        if (fromMoney == null) {
+            return "존재하지 않는 회원 fromId=" + transfer.fromId();
+        }
+        if (!balances.containsKey(transfer.toId())) {
+            return "존재하지 않는 회원 toId=" + transfer.toId();
+        }
+        if (transfer.toId().equals("ex")) {
+            return "이체중 예외 발생";
+        }
+        if (fromMoney < transfer.money()) {
+            return "잔액 부족 fromId=" + transfer.fromId();
+        }
+        return null;
+    }
+
+}
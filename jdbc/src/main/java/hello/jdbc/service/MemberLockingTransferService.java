@@ -0,0 +1,23 @@
+package hello.jdbc.service;
+
+/**
+ * 이체 전에 AccountLockManager로 두 회원의 lock을 잡는 서비스
+ *
+ * lock은 @Transactional 프록시 바깥에서 잡아야 한다.
+ * 그래야 기다리는 동안 커넥션을 잡지 않고, 트랜잭션이 커밋된 뒤에 lock이 풀린다.
+ */
+public class MemberLockingTransferService {
+
+    private final MemberServiceV4 memberService;
+    private final AccountLockManager lockManager;
+
+    public MemberLockingTransferService(MemberServiceV4 memberService, AccountLockManager lockManager) {
+        this.memberService = memberService;
+        this.lockManager = lockManager;
+    }
+
+    public void accountTransfer(String fromId, String toId, int money) {
+        lockManager.runLocked(fromId, toId, () -> memberService.accountTransfer(fromId, toId, money));
+    }
+
+}
@@ -0,0 +1,146 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 낙관적 락 - version 비교 후 수정, 충돌 시 재시도
+ *
+ * 조회한 Member의 version으로 MemberRepository.update(Member)를 호출하고,
+ * 다른 트랜잭션이 먼저 수정해서 OptimisticLockingFailureException이 나면 트랜잭션 전체를 롤백한 뒤 다시 시도한다.
+ * 두 회원은 항상 memberId 순서로 수정하므로 반대 방향 이체끼리 row lock을 엇갈려 잡지 않는다.
+ * 그래도 lock 대기 시간 초과 같은 비관적 lock 예외가 나면 같은 ConcurrencyFailureException으로 보고 다시 시도한다.
+ * 재시도 간격은 baseBackoff * 2^(시도-1) 범위 안에서 무작위(full jitter)로 정해서 충돌한 스레드끼리 다시 부딪히지 않게 한다.
+ */
+@Slf4j
+public class MemberOptimisticTransferService {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final Duration DEFAULT_BASE_BACKOFF = Duration.ofMillis(5);
+    private static final long MAX_BACKOFF_NANOS = Duration.ofMillis(500).toNanos();
+
+    private final TransactionTemplate txTemplate;
+    private final MemberRepository memberRepository;
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public MemberOptimisticTransferService(PlatformTransactionManager transactionManager, MemberRepository memberRepository) {
+        this(transactionManager, memberRepository, DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF);
+    }
+
+    public MemberOptimisticTransferService(PlatformTransactionManager transactionManager, MemberRepository memberRepository,
+                                           int maxAttempts, Duration baseBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+        }
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.memberRepository = memberRepository;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffNanos = baseBackoff.toNanos();
+    }
+
+    public void accountTransfer(String fromId, String toId, int money) {
+        transfers.increment();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                txTemplate.executeWithoutResult(status -> bizLogic(fromId, toId, money));
+                return;
+            } catch (ConcurrencyFailureException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.info("optimistic lock retry exhausted fromId={}, toId={}, attempts={}", fromId, toId, attempt);
+                    throw e;
+                }
+                retries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void bizLogic(String fromId, String toId, int money) {
+        Member fromMember = memberRepository.findById(fromId);
+        Member toMember = memberRepository.findById(toId);
+
+        if (fromMember.getMoney() < money) {
+            throw new IllegalStateException("잔액 부족 fromId=" + fromId);
+        }
+
+        validation(toMember);
+        fromMember.setMoney(fromMember.getMoney() - money);
+        toMember.setMoney(toMember.getMoney() + money);
+
+        // 이체 방향과 관계없이 memberId 순서로 수정한다.
+        if (fromId.compareTo(toId) <= 0) {
+            memberRepository.update(fromMember);
+            memberRepository.update(toMember);
+        } else {
+            memberRepository.update(toMember);
+            memberRepository.update(fromMember);
+        }
+    }
+
+    private void validation(Member toMember) {
+        if(toMember.getMemberId().equals("ex")) {
+            throw new IllegalStateException("이체중 예외 발생");
+        }
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_NANOS, baseBackoffNanos << Math.min(attempt - 1, 20));
+        long sleepNanos = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting to retry", e);
+        }
+    }
+
+    public long getTransferCount() {
+        return transfers.sum();
+    }
+
+    public long getConflictCount() {
+        return conflicts.sum();
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    public long getExhaustedCount() {
+        return exhausted.sum();
+    }
+
+    /**
+     * 이체 요청 한 건당 평균 충돌 횟수
+     */
+    public double getConflictRate() {
+        long count = transfers.sum();
+        return count == 0 ? 0 : (double) conflicts.sum() / count;
+    }
+
+    /**
+     * 재시도가 필요했던 비율 (재시도 횟수 / 이체 요청 수)
+     */
+    public double getRetryRate() {
+        long count = transfers.sum();
+        return count == 0 ? 0 : (double) retries.sum() / count;
+    }
+
+}
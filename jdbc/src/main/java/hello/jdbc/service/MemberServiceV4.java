@@ -29,18 +29,31 @@ public class MemberServiceV4 {
         bizLogic(fromId, toId, money);
     }
 
-    private void bizLogic(String fromId, String toId, int money) {
+    // 읽기 전용 트랜잭션 - ReadWriteRoutingDataSource를 사용하면 replica에서 조회한다.
+    @Transactional(readOnly = true)
+    public Member findById(String memberId) {
+        return memberRepository.findById(memberId);
+    }
 
-        Member fromMember = memberRepository.findById(fromId);
-        Member toMember = memberRepository.findById(toId);
+    // 조회 후 계산해서 덮어쓰지 않고 DB에서 MONEY = MONEY + ? 로 바로 증감한다.
+    // 왕복 4번(조회 2 + 수정 2)이 수정 2번으로 줄고, 동시에 이체해도 갱신 손실이 없다.
+    private void bizLogic(String fromId, String toId, int money) {
+        if (money <= 0) {
+            throw new IllegalArgumentException("이체 금액은 0보다 커야 합니다. money=" + money);
+        }
 
-        memberRepository.update(fromId, fromMember.getMoney() - money);
-        validation(toMember);
-        memberRepository.update(toId, toMember.getMoney() + money);
+        // 잔액 부족 검사는 WHERE 조건에서 처리되므로 영향받은 row 수로 판단한다.
+        if (memberRepository.adjustBalance(fromId, -money) == 0) {
+            throw new IllegalStateException("잔액 부족 또는 존재하지 않는 회원 fromId=" + fromId);
+        }
+        validation(toId);
+        if (memberRepository.adjustBalance(toId, money) == 0) {
+            throw new IllegalStateException("존재하지 않는 회원 toId=" + toId);
+        }
     }
 
-    private void validation(Member toMember) {
-        if(toMember.getMemberId().equals("ex")) {
+    private void validation(String toId) {
+        if(toId.equals("ex")) {
             throw new IllegalStateException("이체중 예외 발생");
         }
     }
@@ -0,0 +1,138 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MemberServiceV4.accountTransfer를 별도 실행기에서 실행하는 facade
+ *
+ * - platformThreads(): 기존 방식. 커넥션 풀 크기에 맞춘 고정 크기 플랫폼 스레드 풀
+ * - virtualThreads(): 요청마다 가상 스레드를 하나씩 만든다. 커넥션/락 대기 동안 캐리어 스레드를 반납하므로
+ *   스레드 수에 메모리를 쓰지 않고 대기 중인 요청을 얼마든지 쌓아둘 수 있다.
+ *
+ * 트랜잭션은 accountTransfer를 실행하는 스레드에서 시작되고 끝나므로 DataSourceUtils의 ThreadLocal 커넥션 바인딩은 그대로 동작한다.
+ * 가상 스레드 모드에서도 동시에 커넥션을 요청하는 수는 풀 크기로 제한되므로, maxConcurrency로 풀 앞에서 미리 줄을 세우면
+ * 커넥션 획득 타임아웃(connectionTimeout)으로 실패하는 요청을 막을 수 있다.
+ */
+@Slf4j
+public class MemberTransferExecutor implements AutoCloseable {
+
+    public enum Mode {PLATFORM, VIRTUAL}
+
+    private final MemberServiceV4 memberService;
+    private final ExecutorService executor;
+    private final Mode mode;
+    // null이면 동시 실행 수를 제한하지 않는다.
+    private final Semaphore permits;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    // 제출 ~ 완료 (실행기 대기 시간 포함)
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private MemberTransferExecutor(MemberServiceV4 memberService, ExecutorService executor, Mode mode, Semaphore permits) {
+        this.memberService = memberService;
+        this.executor = executor;
+        this.mode = mode;
+        this.permits = permits;
+    }
+
+    /**
+     * @param poolSize 보통 커넥션 풀(maximumPoolSize) 크기와 맞춘다.
+     */
+    public static MemberTransferExecutor platformThreads(MemberServiceV4 memberService, int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be positive: " + poolSize);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize,
+                Thread.ofPlatform().name("transfer-", 0).factory());
+        return new MemberTransferExecutor(memberService, executor, Mode.PLATFORM, null);
+    }
+
+    public static MemberTransferExecutor virtualThreads(MemberServiceV4 memberService) {
+        return virtualThreads(memberService, 0);
+    }
+
+    /**
+     * @param maxConcurrency 동시에 accountTransfer를 실행하는 가상 스레드 수, 0이면 제한 없음
+     */
+    public static MemberTransferExecutor virtualThreads(MemberServiceV4 memberService, int maxConcurrency) {
+        if (maxConcurrency < 0) {
+            throw new IllegalArgumentException("maxConcurrency must not be negative: " + maxConcurrency);
+        }
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("transfer-vt-", 0).factory());
+        Semaphore permits = maxConcurrency == 0 ? null : new Semaphore(maxConcurrency);
+        return new MemberTransferExecutor(memberService, executor, Mode.VIRTUAL, permits);
+    }
+
+    public Future<Void> submitTransfer(String fromId, String toId, int money) {
+        submitted.increment();
+        long submittedAt = System.nanoTime();
+        return executor.submit(() -> {
+            try {
+                transfer(fromId, toId, money);
+            } finally {
+                latency.record(System.nanoTime() - submittedAt);
+            }
+            return null;
+        });
+    }
+
+    private void transfer(String fromId, String toId, int money) throws InterruptedException {
+        if (permits != null) {
+            permits.acquire();
+        }
+        try {
+            memberService.accountTransfer(fromId, toId, money);
+        } catch (RuntimeException e) {
+            failed.increment();
+            throw e;
+        } finally {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * 새 요청을 받지 않고, 이미 제출된 이체가 끝날 때까지 기다린다.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("transfer executor did not terminate mode={}", mode);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
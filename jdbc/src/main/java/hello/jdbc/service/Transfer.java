@@ -0,0 +1,7 @@
+package hello.jdbc.service;
+
+/**
+ * 이체 요청 한 건
+ */
+public record Transfer(String fromId, String toId, int money) {
+}
@@ -0,0 +1,17 @@
+package hello.jdbc.service;
+
+/**
+ * 이체 요청 한 건의 처리 결과
+ * 실패한 경우 failureReason에 사유가 담긴다.
+ */
+public record TransferResult(Transfer transfer, boolean success, String failureReason) {
+
+    public static TransferResult success(Transfer transfer) {
+        return new TransferResult(transfer, true, null);
+    }
+
+    public static TransferResult failure(Transfer transfer, String failureReason) {
+        return new TransferResult(transfer, false, failureReason);
+    }
+
+}
@@ -0,0 +1,201 @@
+package hello.jdbc.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.core.Ordered;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Transactional 메서드가 일시적인 DB 오류로 실패하면 트랜잭션 전체를 다시 실행한다.
+ *
+ * 재시도 대상은 스프링 예외 변환기가 만든 TransientDataAccessException 계열뿐이다.
+ * (CannotAcquireLockException - 락 대기 시간 초과, 교착 상태로 희생된 트랜잭션, QueryTimeoutException 등)
+ * 같은 요청을 다시 실행하면 성공할 수 있는 오류만 재시도하고, 비즈니스 예외나 문법 오류 등은 그대로 던진다.
+ *
+ * 트랜잭션 인터셉터보다 바깥에서 실행되어야 한다. 실패한 트랜잭션이 롤백된 다음 새 트랜잭션으로 다시 시작해야 하기 때문이다.
+ * advisor()는 트랜잭션 advisor(LOWEST_PRECEDENCE)보다 먼저 실행되는 순서로 만든다.
+ * 이미 바깥 트랜잭션에 참여 중인 호출은 롤백 전용으로 표시된 트랜잭션 안에서 재시도해도 소용이 없으므로 재시도하지 않는다.
+ */
+@Slf4j
+public class TransientFailureRetryInterceptor implements MethodInterceptor, MeterBinder {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final Duration DEFAULT_BASE_BACKOFF = Duration.ofMillis(10);
+    private static final long MAX_BACKOFF_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+
+    private final Map<String, RetryStats> stats = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public TransientFailureRetryInterceptor() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF);
+    }
+
+    public TransientFailureRetryInterceptor(int maxAttempts, Duration baseBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffNanos = baseBackoff.toNanos();
+    }
+
+    /**
+     * 클래스나 메서드에 @Transactional이 붙은 메서드에 적용하는 advisor
+     * 스프링 부트에서 자동 프록시 대상이 되려면 빈 정의에 @Role(BeanDefinition.ROLE_INFRASTRUCTURE)를 붙인다.
+     */
+    public Advisor advisor() {
+        ComposablePointcut pointcut = new ComposablePointcut(new AnnotationMatchingPointcut(Transactional.class, true))
+                .union(new AnnotationMatchingPointcut(null, Transactional.class, true));
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(pointcut, this);
+        advisor.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+        return advisor;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                || !(invocation instanceof ProxyMethodInvocation proxyInvocation)) {
+            return invocation.proceed();
+        }
+
+        RetryStats methodStats = stats.computeIfAbsent(methodName(invocation), this::newStats);
+        methodStats.calls.increment();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // 같은 호출을 여러 번 진행하려면 invocation을 복제해야 한다.
+                Object result = proxyInvocation.invocableClone().proceed();
+                if (attempt > 1) {
+                    methodStats.recovered.increment();
+                }
+                return result;
+            } catch (TransientDataAccessException e) {
+                if (attempt >= maxAttempts) {
+                    methodStats.exhausted.increment();
+                    log.info("transient failure retry exhausted method={}, attempts={}", methodStats.method, attempt);
+                    throw e;
+                }
+                methodStats.retries.increment();
+                log.debug("retry transient failure method={}, attempt={}, cause={}", methodStats.method, attempt, e.getMessage());
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_NANOS, baseBackoffNanos << Math.min(attempt - 1, 20));
+        long sleepNanos = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting to retry", e);
+        }
+    }
+
+    private static String methodName(MethodInvocation invocation) {
+        Class<?> targetClass = invocation.getThis() != null
+                ? AopUtils.getTargetClass(invocation.getThis())
+                : invocation.getMethod().getDeclaringClass();
+        return targetClass.getSimpleName() + "." + invocation.getMethod().getName();
+    }
+
+    /**
+     * 메서드별 통계 (읽기 전용 뷰)
+     */
+    public Map<String, RetryStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        stats.values().forEach(methodStats -> methodStats.bindTo(registry));
+    }
+
+    private RetryStats newStats(String method) {
+        RetryStats methodStats = new RetryStats(method);
+        MeterRegistry current = registry;
+        if (current != null) {
+            methodStats.bindTo(current);
+        }
+        return methodStats;
+    }
+
+    /**
+     * 메서드 하나의 재시도 통계
+     */
+    public static class RetryStats {
+
+        private final String method;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder recovered = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+
+        RetryStats(String method) {
+            this.method = method;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public long getCallCount() {
+            return calls.sum();
+        }
+
+        public long getRetryCount() {
+            return retries.sum();
+        }
+
+        /**
+         * 재시도 끝에 성공한 호출 수
+         */
+        public long getRecoveredCount() {
+            return recovered.sum();
+        }
+
+        /**
+         * 재시도를 모두 쓰고도 실패한 호출 수
+         */
+        public long getExhaustedCount() {
+            return exhausted.sum();
+        }
+
+        void bindTo(MeterRegistry registry) {
+            FunctionCounter.builder("tx.retry.calls", calls, LongAdder::sum).tag("method", method).register(registry);
+            FunctionCounter.builder("tx.retry.retries", retries, LongAdder::sum).tag("method", method).register(registry);
+            FunctionCounter.builder("tx.retry.recovered", recovered, LongAdder::sum).tag("method", method).register(registry);
+            FunctionCounter.builder("tx.retry.exhausted", exhausted, LongAdder::sum).tag("method", method).register(registry);
+        }
+
+        @Override
+        public String toString() {
+            return method + " calls=" + getCallCount() + " retries=" + getRetryCount()
+                    + " recovered=" + getRecoveredCount() + " exhausted=" + getExhaustedCount();
+        }
+    }
+
+}
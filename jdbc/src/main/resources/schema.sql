@@ -0,0 +1,13 @@
+-- 애플리케이션 시작 시 실행 (spring.sql.init.mode=always), 여러 번 실행해도 안전하도록 작성
+CREATE TABLE IF NOT EXISTS MEMBER (
+    MEMBER_ID VARCHAR(10),
+    MONEY INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (MEMBER_ID)
+);
+
+-- 낙관적 락 버전
+ALTER TABLE MEMBER ADD COLUMN IF NOT EXISTS VERSION BIGINT NOT NULL DEFAULT 0;
+
+-- 잔액 기준 집계/정렬 (topByMoney, countByMoneyRange, moneyHistogram)
+-- topByMoney의 ORDER BY MONEY DESC, MEMBER_ID 순서 그대로 저장해서 정렬 없이 앞에서부터 읽는다.
+CREATE INDEX IF NOT EXISTS IDX_MEMBER_MONEY ON MEMBER (MONEY DESC, MEMBER_ID);
@@ -0,0 +1,81 @@
+package hello.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.MemberSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+class DatabaseWarmupTest {
+
+    HikariDataSource dataSource;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(ConnectionConst.URL);
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+        dataSource.setMinimumIdle(5);
+        dataSource.setMaximumPoolSize(10);
+    }
+
+    @AfterEach
+    void afterEach() {
+        dataSource.close();
+    }
+
+    @Test
+    void fillPoolToMinimum() {
+        CountingRepository repository = new CountingRepository(dataSource);
+        DatabaseWarmup warmup = new DatabaseWarmup(dataSource, repository, 100, DatabaseWarmup.WARMUP_MEMBER_ID);
+        long elapsed = warmup.warmUp();
+        log.info("warm-up elapsed={}ms", elapsed);
+
+        Assertions.assertThat(dataSource.getHikariPoolMXBean().getTotalConnections()).isGreaterThanOrEqualTo(5);
+        Assertions.assertThat(dataSource.getHikariPoolMXBean().getActiveConnections()).isZero();
+        // 없는 회원 조회 예외에서 멈추지 않고 끝까지 반복한다.
+        Assertions.assertThat(repository.findByIdCalls).hasValue(100);
+    }
+
+    @Test
+    void warmupLeavesNoRows() {
+        MemberRepositoryV4_2 repository = new MemberRepositoryV4_2(dataSource);
+        new DatabaseWarmup(dataSource, repository, 10, DatabaseWarmup.WARMUP_MEMBER_ID).warmUp();
+
+        Assertions.assertThatThrownBy(() -> repository.findById(DatabaseWarmup.WARMUP_MEMBER_ID))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    static class CountingRepository extends MemberRepositoryV4_2 {
+
+        final AtomicInteger findByIdCalls = new AtomicInteger();
+
+        CountingRepository(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public Member findById(String memberId) {
+            findByIdCalls.incrementAndGet();
+            return super.findById(memberId);
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.AdaptivePoolSizer.Decision;
+import hello.jdbc.connection.AdaptivePoolSizer.PoolSample;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+class AdaptivePoolSizerTest {
+
+    static final int MIN = 2;
+    static final int MAX = 40;
+
+    @Test
+    void convergeOnStepLoad() {
+        // DB 코어가 충분해서 커넥션을 늘려도 SQL이 느려지지 않는 경우
+        SimulatedPool pool = new SimulatedPool(Integer.MAX_VALUE, 20);
+        HikariConfig control = control(10);
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer(control, pool, MIN, MAX, Duration.ofMillis(1));
+        pool.control = control;
+
+        // 200 req/s * 20ms = 동시 4개 -> 5 (headroom 1.2)
+        List<Decision> low = run(sizer, pool, 200, 30);
+        Assertions.assertThat(control.getMaximumPoolSize()).isEqualTo(5);
+        assertMonotonic(low);
+
+        // 1500 req/s -> 동시 30개, 대기가 생기므로 두 배씩 빠르게 늘린다.
+        List<Decision> high = run(sizer, pool, 1500, 30);
+        Assertions.assertThat(control.getMaximumPoolSize()).isBetween(30, MAX);
+        Assertions.assertThat(high.subList(5, high.size())).allMatch(d -> d.sample().waiting() == 0);
+        Assertions.assertThat(high.stream().filter(d -> d.from() != d.to()).count()).isLessThanOrEqualTo(3);
+        assertMonotonic(high);
+
+        // 100 req/s -> 동시 2개 -> 3, 줄일 때는 천천히
+        List<Decision> idle = run(sizer, pool, 100, 40);
+        Assertions.assertThat(control.getMaximumPoolSize()).isEqualTo(3);
+        Assertions.assertThat(idle.get(0).to()).isEqualTo(idle.get(0).from());
+        assertMonotonic(idle);
+
+        for (Decision decision : sizer.getDecisions()) {
+            Assertions.assertThat(decision.to()).isBetween(MIN, MAX);
+        }
+        // minimumIdle이 maximumPoolSize보다 작아야 줄인 만큼 실제 커넥션이 정리된다.
+        Assertions.assertThat(control.getMinimumIdle()).isLessThan(control.getMaximumPoolSize());
+        Assertions.assertThat(idle.get(idle.size() - 1).sample().total()).isLessThanOrEqualTo(3);
+        Assertions.assertThat(high.get(high.size() - 1).sample().total()).isGreaterThan(idle.get(idle.size() - 1).sample().total());
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        sizer.bindTo(registry);
+        Assertions.assertThat(registry.get("jdbc.pool.size.target").gauge().value()).isEqualTo(3);
+        Assertions.assertThat(registry.get("jdbc.pool.resize").tag("direction", "up").functionCounter().count())
+                .isEqualTo(sizer.getGrowCount());
+        Assertions.assertThat(sizer.getShrinkCount()).isPositive();
+    }
+
+    @Test
+    void holdWhenDatabaseSaturates() {
+        // DB 코어 8개 - 동시 실행이 8개를 넘으면 SQL이 그만큼 느려진다.
+        SimulatedPool pool = new SimulatedPool(8, 20);
+        HikariConfig control = control(5);
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer(control, pool, MIN, MAX, Duration.ofMillis(1));
+        pool.control = control;
+
+        // 여유 있는 동안 기준 SQL 지연 시간을 잡는다.
+        run(sizer, pool, 100, 2);
+
+        // 처리 가능량(8 / 20ms = 400 req/s)보다 많은 요청 - 커넥션을 늘려도 대기가 줄지 않는다.
+        List<Decision> overload = run(sizer, pool, 2000, 20);
+        Assertions.assertThat(control.getMaximumPoolSize()).isLessThan(MAX);
+        Assertions.assertThat(overload.get(overload.size() - 1).reason()).contains("database latency");
+    }
+
+    @Test
+    void hikari() throws Exception {
+        HikariDataSource hikari = new HikariDataSource();
+        hikari.setJdbcUrl(ConnectionConst.URL);
+        hikari.setUsername(ConnectionConst.USERNAME);
+        hikari.setPassword(ConnectionConst.PASSWORD);
+        hikari.setMaximumPoolSize(2);
+        hikari.setMinimumIdle(2);
+        hikari.setIdleTimeout(TimeUnit.SECONDS.toMillis(10));
+        InstrumentedDataSource dataSource = new InstrumentedDataSource(hikari);
+        // 대기 스레드 수만 보고 늘리도록 목표 대기 시간은 넉넉하게 잡는다.
+        AdaptivePoolSizer sizer = AdaptivePoolSizer.forHikari(hikari, dataSource, 2, 10, Duration.ofSeconds(10));
+        sizer.setShrinkAfterTicks(1);
+
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Thread thread = new Thread(() -> {
+                try (Connection con = dataSource.getConnection()) {
+                    release.await();
+                } catch (Exception e) {
+                    log.info("borrow failed", e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (hikari.getHikariPoolMXBean().getThreadsAwaitingConnection() < 4 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            Decision grow = sizer.tick();
+            log.info("decision={}", grow);
+            Assertions.assertThat(grow.sample().active()).isEqualTo(2);
+            Assertions.assertThat(grow.sample().waiting()).isEqualTo(4);
+            Assertions.assertThat(grow.to()).isEqualTo(4);
+            Assertions.assertThat(hikari.getMaximumPoolSize()).isEqualTo(4);
+            Assertions.assertThat(hikari.getMinimumIdle()).isEqualTo(2);
+        } finally {
+            release.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        try {
+            Assertions.assertThat(hikari.getHikariPoolMXBean().getTotalConnections()).isEqualTo(4);
+
+            Decision shrink = sizer.tick();
+            log.info("decision={}", shrink);
+            Assertions.assertThat(shrink.to()).isEqualTo(3);
+            Assertions.assertThat(hikari.getMaximumPoolSize()).isEqualTo(3);
+
+            // 유휴 커넥션은 Hikari housekeeper(30초 주기)가 idleTimeout이 지난 것부터 minimumIdle까지 닫는다.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (hikari.getHikariPoolMXBean().getTotalConnections() > 3 && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            Assertions.assertThat(hikari.getHikariPoolMXBean().getTotalConnections())
+                    .isLessThanOrEqualTo(hikari.getMaximumPoolSize());
+        } finally {
+            hikari.close();
+        }
+    }
+
+    private static HikariConfig control(int size) {
+        HikariConfig control = new HikariConfig();
+        control.setMaximumPoolSize(size);
+        control.setMinimumIdle(size);
+        return control;
+    }
+
+    private static List<Decision> run(AdaptivePoolSizer sizer, SimulatedPool pool, int requestsPerSecond, int ticks) {
+        pool.requestsPerSecond = requestsPerSecond;
+        List<Decision> decisions = new ArrayList<>();
+        for (int i = 0; i < ticks; i++) {
+            decisions.add(sizer.tick());
+        }
+        log.info("{} req/s -> {}", requestsPerSecond, decisions.stream().map(Decision::to).toList());
+        return decisions;
+    }
+
+    // 한 단계 안에서는 한 방향으로만 움직여야 한다. (진동하지 않음)
+    private static void assertMonotonic(List<Decision> decisions) {
+        long up = decisions.stream().filter(d -> d.to() > d.from()).count();
+        long down = decisions.stream().filter(d -> d.to() < d.from()).count();
+        Assertions.assertThat(up == 0 || down == 0).as("up=%d, down=%d", up, down).isTrue();
+    }
+
+    /**
+     * 풀 크기와 요청량으로 한 주기의 상태를 계산하는 단순 모델 (Little's law)
+     * 필요한 동시 커넥션 수 = 초당 요청 수 * SQL 시간, maximumPoolSize보다 많으면 나머지는 대기한다.
+     * 동시에 실행 중인 SQL이 DB 코어 수를 넘으면 SQL 시간이 비례해서 늘어난다.
+     *
+     * 실제 커넥션 수는 maximumPoolSize와 따로 움직인다. 사용 중인 커넥션 + minimumIdle 만큼 채워지고,
+     * 그보다 많은 유휴 커넥션은 바로 닫히지 않고 다음 주기(idleTimeout)에 정리된다.
+     */
+    static class SimulatedPool implements AdaptivePoolSizer.PoolMetricsSource {
+
+        final int databaseCores;
+        final double serviceMillis;
+        HikariConfig control;
+        int requestsPerSecond;
+        int total = -1;
+
+        SimulatedPool(int databaseCores, double serviceMillis) {
+            this.databaseCores = databaseCores;
+            this.serviceMillis = serviceMillis;
+        }
+
+        @Override
+        public PoolSample sample() {
+            int max = control.getMaximumPoolSize();
+            int offered = (int) Math.ceil(requestsPerSecond * serviceMillis / 1000);
+            int active = Math.min(max, offered);
+            double service = serviceMillis * Math.max(1.0, (double) active / databaseCores);
+            double concurrency = requestsPerSecond * service / 1000;
+            int waiting = Math.max(0, (int) Math.ceil(concurrency) - max);
+            double waitMillis = waiting == 0 ? 0 : service * (concurrency - max) / max;
+
+            int wanted = Math.min(max, active + control.getMinimumIdle());
+            if (total < 0) {
+                total = wanted;
+            }
+            // 모자라면 바로 만들고, 남는 유휴 커넥션은 한 주기 뒤에 닫는다.
+            int previous = total;
+            total = wanted;
+            int current = Math.max(wanted, previous);
+            return new PoolSample(active, current - active, current, waiting,
+                    (long) (waitMillis * 1_000_000), (long) (service * 1_000_000));
+        }
+    }
+
+}
@@ -5,6 +5,7 @@ import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 
 @Slf4j
 public class DBConnectionUtilTest {
@@ -15,4 +16,18 @@ public class DBConnectionUtilTest {
         Assertions.assertThat(connection).isNotNull();
     }
 
+    @Test
+    void reuseConnection() throws SQLException {
+        Connection first = DBConnectionUtil.getConnection();
+        first.close();
+        long created = DBConnectionUtil.getPool().getCreatedCount();
+
+        // 같은 스레드에서 다시 빌리면 방금 반납한 커넥션을 재사용한다.
+        try (Connection second = DBConnectionUtil.getConnection()) {
+            Assertions.assertThat(second.isClosed()).isFalse();
+        }
+        Assertions.assertThat(DBConnectionUtil.getPool().getCreatedCount()).isEqualTo(created);
+        log.info("{}", DBConnectionUtil.getPool());
+    }
+
 }
@@ -0,0 +1,86 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.sql.SQLException;
+
+@Slf4j
+class InstrumentedDataSourceTest {
+
+    HikariDataSource hikariDataSource;
+    InstrumentedDataSource dataSource;
+    SimpleMeterRegistry registry;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        hikariDataSource = new HikariDataSource();
+        hikariDataSource.setJdbcUrl(ConnectionConst.URL);
+        hikariDataSource.setUsername(ConnectionConst.USERNAME);
+        hikariDataSource.setPassword(ConnectionConst.PASSWORD);
+
+        // 기본값은 모든 대여의 호출자를 찾는다.
+        dataSource = new InstrumentedDataSource(hikariDataSource);
+        registry = new SimpleMeterRegistry();
+        dataSource.bindTo(registry);
+    }
+
+    @AfterEach
+    void afterEach() {
+        hikariDataSource.close();
+    }
+
+    @Test
+    void recordPerCaller() throws SQLException {
+        MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource);
+        MemberServiceV3_1 memberService = new MemberServiceV3_1(new DataSourceTransactionManager(dataSource), repository);
+
+        repository.save(new Member("instA", 10000));
+        repository.save(new Member("instB", 10000));
+        memberService.accountTransfer("instA", "instB", 1000);
+        repository.delete("instA");
+        repository.delete("instB");
+
+        dataSource.getStats().values().forEach(stats -> log.info("{}", stats));
+
+        // 트랜잭션 안에서는 repository가 아닌 트랜잭션을 시작한 서비스 메서드가 커넥션을 한 번만 빌린다.
+        Assertions.assertThat(dataSource.getStats().get("MemberServiceV3_1.accountTransfer").getBorrowCount()).isEqualTo(1);
+        Assertions.assertThat(dataSource.getStats().get("MemberRepositoryV3.save").getBorrowCount()).isEqualTo(2);
+        Assertions.assertThat(dataSource.getStats().get("MemberRepositoryV3.delete").getHoldTime().getCount()).isEqualTo(2);
+        Assertions.assertThat(dataSource.getActiveCount()).isEqualTo(0);
+
+        Assertions.assertThat(registry.get("jdbc.connection.acquire").tag("caller", "MemberRepositoryV3.save").timer().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void unsampledCallers() throws SQLException {
+        InstrumentedDataSource unsampled = new InstrumentedDataSource(hikariDataSource, 0);
+        MemberRepositoryV3 repository = new MemberRepositoryV3(unsampled);
+
+        repository.save(new Member("instC", 10000));
+        repository.findById("instC");
+        repository.delete("instC");
+
+        // 호출자를 찾지 않아도 대여 횟수와 시간은 모두 기록된다.
+        Assertions.assertThat(unsampled.getStats()).containsOnlyKeys(InstrumentedDataSource.UNSAMPLED_CALLER);
+        Assertions.assertThat(unsampled.getStats().get(InstrumentedDataSource.UNSAMPLED_CALLER).getBorrowCount()).isEqualTo(3);
+        Assertions.assertThat(unsampled.getStats().get(InstrumentedDataSource.UNSAMPLED_CALLER).getHoldTime().getCount()).isEqualTo(3);
+    }
+
+}
@@ -0,0 +1,56 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 테스트용 replica
+ * lag 간격마다 primary의 MEMBER 테이블을 통째로 replica(두 번째 H2)로 복사한다.
+ * replica에는 최대 lag 만큼 지난 데이터가 보인다.
+ */
+@Slf4j
+public class LaggingReplica {
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final Duration lag;
+    private ScheduledExecutorService scheduler;
+
+    public LaggingReplica(DataSource primary, DataSource replica, Duration lag) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.lag = lag;
+        this.replica.execute("CREATE TABLE IF NOT EXISTS MEMBER (MEMBER_ID VARCHAR(10), MONEY INTEGER NOT NULL DEFAULT 0, "
+                + "VERSION BIGINT NOT NULL DEFAULT 0, PRIMARY KEY (MEMBER_ID))");
+    }
+
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(this::sync, lag.toMillis(), lag.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public synchronized void sync() {
+        List<Map<String, Object>> rows = primary.queryForList("SELECT MEMBER_ID, MONEY, VERSION FROM MEMBER");
+        replica.update("DELETE FROM MEMBER");
+        for (Map<String, Object> row : rows) {
+            replica.update("INSERT INTO MEMBER(MEMBER_ID, MONEY, VERSION) VALUES(?, ?, ?)",
+                    row.get("MEMBER_ID"), row.get("MONEY"), row.get("VERSION"));
+        }
+        log.debug("replica synced rows={}", rows.size());
+    }
+
+}
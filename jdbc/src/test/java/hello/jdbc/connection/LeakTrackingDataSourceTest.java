@@ -0,0 +1,102 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberRepositoryV4_1;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+@Slf4j
+class LeakTrackingDataSourceTest {
+
+    HikariDataSource hikariDataSource;
+    LeakTrackingDataSource dataSource;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        hikariDataSource = new HikariDataSource();
+        hikariDataSource.setJdbcUrl(ConnectionConst.URL);
+        hikariDataSource.setUsername(ConnectionConst.USERNAME);
+        hikariDataSource.setPassword(ConnectionConst.PASSWORD);
+
+        // 테스트에서는 모든 커넥션의 획득 스택을 남긴다.
+        dataSource = new LeakTrackingDataSource(hikariDataSource, Duration.ofMillis(100), 1.0);
+    }
+
+    @AfterEach
+    void afterEach() {
+        dataSource.close();
+        hikariDataSource.close();
+    }
+
+    @Test
+    void noLeak() throws SQLException {
+        MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource);
+        repository.save(new Member("leakA", 10000));
+        repository.findById("leakA");
+        repository.delete("leakA");
+
+        Assertions.assertThat(dataSource.getOpenCount()).isZero();
+        Assertions.assertThat(dataSource.getHoldTime().getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void detectLeak() throws Exception {
+        // releaseConnection()을 빠뜨린 코드
+        Connection leaked = DataSourceUtils.getConnection(dataSource);
+        Thread.sleep(150);
+
+        // 백그라운드 검사가 먼저 찾았을 수도 있으므로 직접 한 번 더 검사한다. (같은 커넥션은 한 번만 센다)
+        dataSource.checkLeaks();
+        Assertions.assertThat(dataSource.getSuspectedLeakCount()).isEqualTo(1);
+        Assertions.assertThat(dataSource.getOpenConnections()).singleElement().satisfies(info -> {
+            Assertions.assertThat(info.suspected()).isTrue();
+            Assertions.assertThat(info.thread()).isEqualTo(Thread.currentThread().getName());
+            Assertions.assertThat(info.held()).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+        });
+
+        String dump = dataSource.dump();
+        log.info("{}", dump);
+        Assertions.assertThat(dump).contains("[LEAK?]").contains("LeakTrackingDataSourceTest.detectLeak");
+
+        DataSourceUtils.releaseConnection(leaked, dataSource);
+        Assertions.assertThat(dataSource.getOpenCount()).isZero();
+    }
+
+    @Test
+    void unsampledLeakHasNoStack() throws Exception {
+        try (LeakTrackingDataSource unsampled = new LeakTrackingDataSource(hikariDataSource, Duration.ofMillis(100), 0)) {
+            // close()를 빠뜨린 Stream은 커넥션을 계속 잡고 있다.
+            Stream<Member> leaked = new MemberRepositoryV4_1(unsampled).streamAll();
+            Thread.sleep(150);
+
+            unsampled.checkLeaks();
+            Assertions.assertThat(unsampled.getOpenConnections()).singleElement().satisfies(info -> {
+                Assertions.assertThat(info.suspected()).isTrue();
+                // 스택을 남기지 않아도 호출자는 기록된다.
+                Assertions.assertThat(info.operation()).isEqualTo("MemberRepositoryV4_1.streamAll");
+                Assertions.assertThat(info.stack()).isNull();
+            });
+
+            leaked.close();
+            Assertions.assertThat(unsampled.getOpenCount()).isZero();
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package hello.jdbc.connection;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * 스프링 없이 실행하는 테스트용 스키마 준비
+ *
+ * @SpringBootTest는 시작할 때 schema.sql을 실행하지만, 일반 JUnit 테스트는 외부 H2(ConnectionConst.URL)를 그대로 쓰므로
+ * VERSION 컬럼 같은 이후 변경이 반영되지 않았을 수 있다. 같은 schema.sql을 JVM마다 한 번 실행한다. (여러 번 실행해도 안전)
+ */
+public abstract class MemberSchema {
+
+    private static boolean created;
+
+    public static synchronized void create() {
+        if (created) {
+            return;
+        }
+        try (Connection con = DriverManager.getConnection(ConnectionConst.URL, ConnectionConst.USERNAME, ConnectionConst.PASSWORD)) {
+            ScriptUtils.executeSqlScript(con, new ClassPathResource("schema.sql"));
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        created = true;
+    }
+
+}
@@ -0,0 +1,123 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/*
+ * 읽기/쓰기 분리
+ * primary: 외부 H2(ConnectionConst.URL), replica: 메모리 H2 + LaggingReplica
+ */
+@Slf4j
+@SpringBootTest
+class ReadWriteRoutingDataSourceTest {
+
+    public static final String MEMBER_A = "routeA";
+
+    @Autowired
+    private MemberServiceV4 memberService;
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private LaggingReplica laggingReplica;
+
+    @TestConfiguration
+    static class TestConfig {
+
+        @Bean
+        DataSource primaryDataSource() {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl(ConnectionConst.URL);
+            dataSource.setUsername(ConnectionConst.USERNAME);
+            dataSource.setPassword(ConnectionConst.PASSWORD);
+            return dataSource;
+        }
+
+        @Bean
+        DataSource replicaDataSource() {
+            return new DriverManagerDataSource("jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1", "sa", "");
+        }
+
+        @Bean
+        LaggingReplica laggingReplica() {
+            // 자동 동기화 간격을 길게 잡고, 테스트에서는 sync()로 직접 동기화한다.
+            return new LaggingReplica(primaryDataSource(), replicaDataSource(), Duration.ofMinutes(1));
+        }
+
+        // 스프링 부트 자동 구성(schema.sql 초기화 등)이 사용할 DataSource
+        @Bean
+        @Primary
+        DataSource routingDataSource() {
+            return ReadWriteRoutingDataSource.create(primaryDataSource(), replicaDataSource());
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new DataSourceTransactionManager(routingDataSource());
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(routingDataSource());
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+    }
+
+    @AfterEach
+    void after() {
+        memberRepository.delete(MEMBER_A);
+        laggingReplica.sync();
+    }
+
+    @Test
+    @DisplayName("readOnly 트랜잭션은 replica에서 조회")
+    void routeReadOnlyToReplica() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        laggingReplica.sync();
+
+        // primary에만 반영된 변경 (replica 지연 상태)
+        memberRepository.update(MEMBER_A, 20000);
+
+        Assertions.assertThat(memberService.findById(MEMBER_A).getMoney()).isEqualTo(10000); // replica
+        Assertions.assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(20000); // primary
+
+        laggingReplica.sync();
+        Assertions.assertThat(memberService.findById(MEMBER_A).getMoney()).isEqualTo(20000);
+    }
+
+    @Test
+    @DisplayName("쓰기 트랜잭션은 primary")
+    void routeWriteToPrimary() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member("routeB", 0));
+        try {
+            memberService.accountTransfer(MEMBER_A, "routeB", 1000);
+            Assertions.assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(9000);
+        } finally {
+            memberRepository.delete("routeB");
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import hello.jdbc.service.MemberServiceV3_2;
+import hello.jdbc.service.MemberServiceV3_3;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.sql.SQLException;
+
+@Slf4j
+class RecordingTransactionManagerTest {
+
+    HikariDataSource dataSource;
+    RecordingTransactionManager transactionManager;
+    MemberRepositoryV3 repository;
+    SimpleMeterRegistry registry;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() throws SQLException {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(ConnectionConst.URL);
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+
+        transactionManager = new RecordingTransactionManager(dataSource);
+        registry = new SimpleMeterRegistry();
+        transactionManager.bindTo(registry);
+        // Repository는 원래 DataSource를 그대로 사용한다.
+        repository = new MemberRepositoryV3(dataSource);
+
+        repository.save(new Member("recA", 10000));
+        repository.save(new Member("recB", 10000));
+        repository.save(new Member("ex", 10000));
+    }
+
+    @AfterEach
+    void afterEach() throws SQLException {
+        repository.delete("recA");
+        repository.delete("recB");
+        repository.delete("ex");
+        dataSource.close();
+    }
+
+    @Test
+    void recordPerServiceMethod() throws SQLException {
+        new MemberServiceV3_1(transactionManager, repository).accountTransfer("recA", "recB", 1000);
+        new MemberServiceV3_2(transactionManager, repository).accountTransfer("recA", "recB", 1000);
+
+        ProxyFactory proxyFactory = new ProxyFactory(new MemberServiceV3_3(repository));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        MemberServiceV3_3 serviceV3_3 = (MemberServiceV3_3) proxyFactory.getProxy();
+        serviceV3_3.accountTransfer("recA", "recB", 1000);
+        Assertions.assertThatThrownBy(() -> serviceV3_3.accountTransfer("recA", "ex", 1000))
+                .isInstanceOf(IllegalStateException.class);
+
+        transactionManager.getStats().values().forEach(stats -> log.info("{}", stats));
+
+        // 조회 2 + 수정 2
+        for (String method : new String[]{"MemberServiceV3_1.accountTransfer", "MemberServiceV3_2.accountTransfer"}) {
+            RecordingTransactionManager.TransactionStats stats = transactionManager.getStats().get(method);
+            Assertions.assertThat(stats.getCommitCount()).isEqualTo(1);
+            Assertions.assertThat(stats.getStatementCount()).isEqualTo(4);
+            Assertions.assertThat(stats.getRowsAffected()).isEqualTo(2);
+            Assertions.assertThat(stats.getHoldTime().getCount()).isEqualTo(1);
+        }
+
+        // 정상 이체 1건 + 검증 실패로 롤백 1건 (조회 2 + 수정 1)
+        RecordingTransactionManager.TransactionStats stats = transactionManager.getStats().get("MemberServiceV3_3.accountTransfer");
+        Assertions.assertThat(stats.getCommitCount()).isEqualTo(1);
+        Assertions.assertThat(stats.getRollbackCount()).isEqualTo(1);
+        Assertions.assertThat(stats.getStatementCount()).isEqualTo(7);
+        Assertions.assertThat(stats.getMaxStatements()).isEqualTo(4);
+        Assertions.assertThat(stats.getDuration().getCount()).isEqualTo(2);
+
+        Assertions.assertThat(registry.get("tx.duration")
+                .tag("method", "MemberServiceV3_3.accountTransfer").tag("outcome", "rollback").timer().count())
+                .isEqualTo(1);
+        Assertions.assertThat(repository.findById("recA").getMoney()).isEqualTo(7000);
+    }
+
+}
@@ -0,0 +1,116 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+class StripedConnectionPoolTest {
+
+    StripedConnectionPool pool;
+
+    @AfterEach
+    void afterEach() {
+        pool.close();
+    }
+
+    @Test
+    void fillToMinimum() {
+        pool = newPool(3, 5, Duration.ofMinutes(30));
+        Assertions.assertThat(pool.getTotalConnections()).isEqualTo(3);
+        Assertions.assertThat(pool.getIdleConnections()).isEqualTo(3);
+    }
+
+    @Test
+    void resetOnClose() throws SQLException {
+        pool = newPool(1, 1, Duration.ofMinutes(30));
+        try (Connection con = pool.getConnection()) {
+            con.setAutoCommit(false);
+        }
+        // 크기 1이므로 같은 물리 커넥션, autoCommit은 원래대로
+        try (Connection con = pool.getConnection()) {
+            Assertions.assertThat(con.getAutoCommit()).isTrue();
+        }
+        Assertions.assertThat(pool.getCreatedCount()).isEqualTo(1);
+        Assertions.assertThat(pool.getAffinityHitCount()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void closedProxy() throws SQLException {
+        pool = newPool(1, 1, Duration.ofMinutes(30));
+        Connection con = pool.getConnection();
+        con.close();
+        Assertions.assertThat(con.isClosed()).isTrue();
+        Assertions.assertThatThrownBy(con::createStatement).isInstanceOf(SQLException.class);
+    }
+
+    @Test
+    void timeout() throws SQLException {
+        pool = new StripedConnectionPool(ConnectionConst.URL, ConnectionConst.USERNAME, ConnectionConst.PASSWORD,
+                0, 1, Duration.ofMinutes(30), Duration.ofMillis(500), Duration.ofMillis(100));
+        try (Connection ignored = pool.getConnection()) {
+            Assertions.assertThatThrownBy(() -> pool.getConnection()).isInstanceOf(SQLTimeoutException.class);
+        }
+        Assertions.assertThat(pool.getTimeoutCount()).isEqualTo(1);
+    }
+
+    @Test
+    void maxLifetime() throws Exception {
+        pool = newPool(1, 1, Duration.ofMillis(50));
+        pool.getConnection().close();
+        Thread.sleep(100);
+        try (Connection con = pool.getConnection()) {
+            Assertions.assertThat(con.isValid(1)).isTrue();
+        }
+        Assertions.assertThat(pool.getRetiredCount()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void concurrentBorrow() throws Exception {
+        pool = newPool(2, 4, Duration.ofMinutes(30));
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        try (Connection con = pool.getConnection()) {
+                            con.getAutoCommit();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        log.info("{}", pool);
+        Assertions.assertThat(pool.getTotalConnections()).isLessThanOrEqualTo(4);
+        Assertions.assertThat(pool.getIdleConnections()).isEqualTo(pool.getTotalConnections());
+        Assertions.assertThat(pool.getAffinityHitCount() + pool.getSharedHitCount() + pool.getHandoffCount()
+                + pool.getCreatedCount()).isGreaterThanOrEqualTo(16 * 500);
+    }
+
+    private static StripedConnectionPool newPool(int min, int max, Duration maxLifetime) {
+        return new StripedConnectionPool(ConnectionConst.URL, ConnectionConst.USERNAME, ConnectionConst.PASSWORD,
+                min, max, maxLifetime, Duration.ofMillis(500), Duration.ofSeconds(5));
+    }
+
+}
@@ -0,0 +1,157 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.MemberSchema;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+@Slf4j
+class CachingMemberRepositoryTest {
+
+    public static final String MEMBER_A = "cacheA";
+    public static final String MEMBER_B = "cacheB";
+    public static final String MEMBER_C = "cacheC";
+
+    HikariDataSource dataSource;
+    TransactionTemplate txTemplate;
+    MemberRepository target;
+    CachingMemberRepository repository;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(ConnectionConst.URL);
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        target = new MemberRepositoryV5(dataSource);
+        repository = new CachingMemberRepository(target, 2);
+
+        repository.save(new Member(MEMBER_A, 10000));
+        repository.save(new Member(MEMBER_B, 10000));
+        repository.save(new Member(MEMBER_C, 10000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.delete(MEMBER_A);
+        repository.delete(MEMBER_B);
+        repository.delete(MEMBER_C);
+        dataSource.close();
+    }
+
+    @Test
+    void readThrough() {
+        repository.findById(MEMBER_A);
+        repository.findById(MEMBER_A);
+
+        Assertions.assertThat(repository.getMissCount()).isEqualTo(1);
+        Assertions.assertThat(repository.getHitCount()).isEqualTo(1);
+
+        // update 시 무효화
+        repository.update(MEMBER_A, 20000);
+        Assertions.assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(20000);
+        Assertions.assertThat(repository.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    void lruEviction() {
+        repository.findById(MEMBER_A);
+        repository.findById(MEMBER_B);
+        repository.findById(MEMBER_A); // B가 가장 오래 사용되지 않은 항목
+        repository.findById(MEMBER_C); // B 제거
+
+        Assertions.assertThat(repository.size()).isEqualTo(2);
+        Assertions.assertThat(repository.getEvictionCount()).isEqualTo(1);
+
+        repository.findById(MEMBER_A);
+        Assertions.assertThat(repository.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void ttl() throws InterruptedException {
+        CachingMemberRepository ttlRepository = new CachingMemberRepository(target, 10, Duration.ofMillis(50));
+        ttlRepository.findById(MEMBER_A);
+        Thread.sleep(100);
+        ttlRepository.findById(MEMBER_A);
+
+        Assertions.assertThat(ttlRepository.getExpirationCount()).isEqualTo(1);
+        Assertions.assertThat(ttlRepository.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    void rollbackDoesNotLeaveStaleEntry() {
+        repository.findById(MEMBER_A);
+
+        // accountTransfer 처럼 조회 후 수정하다가 롤백
+        txTemplate.executeWithoutResult(status -> {
+            Member member = repository.findById(MEMBER_A);
+            repository.update(MEMBER_A, member.getMoney() - 2000);
+            Assertions.assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+            status.setRollbackOnly();
+        });
+
+        Assertions.assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void publishAfterCommit() {
+        txTemplate.executeWithoutResult(status -> {
+            repository.findById(MEMBER_B);
+            // 커밋 전에는 캐시에 반영되지 않는다.
+            Assertions.assertThat(repository.size()).isEqualTo(0);
+        });
+
+        Assertions.assertThat(repository.size()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidatedDuringTransactionIsNotPublished() {
+        txTemplate.executeWithoutResult(status -> {
+            repository.findById(MEMBER_B);
+
+            // 트랜잭션이 읽은 뒤 다른 스레드가 수정하고 커밋한다.
+            Thread writer = new Thread(() -> repository.update(MEMBER_B, 30000));
+            writer.start();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // 커밋 시점에 트랜잭션이 읽은 10000을 캐시에 올리면 안 된다.
+        Assertions.assertThat(repository.size()).isEqualTo(0);
+        Assertions.assertThat(repository.findById(MEMBER_B).getMoney()).isEqualTo(30000);
+    }
+
+    @Test
+    void optimisticUpdateFromCachedRead() {
+        repository.findById(MEMBER_A);
+        Member cached = repository.findById(MEMBER_A);
+        Assertions.assertThat(repository.getHitCount()).isEqualTo(1);
+        Assertions.assertThat(cached.getVersion()).isEqualTo(target.findById(MEMBER_A).getVersion());
+
+        // 캐시에서 읽은 version으로도 낙관적 락 수정이 성공해야 한다.
+        cached.setMoney(15000);
+        repository.update(cached);
+        Assertions.assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(15000);
+    }
+
+}
@@ -0,0 +1,110 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.MemberSchema;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 집계 쿼리 - DB에서 계산한 값이 전체를 읽어서 Java에서 계산한 값과 같아야 한다.
+ * 테이블에 다른 테스트 데이터가 남아 있을 수 있으므로 기대값도 전체 테이블 기준으로 계산한다.
+ */
+@Slf4j
+class MemberRepositoryAggregateTest {
+
+    static final int MEMBERS = 1000;
+
+    HikariDataSource dataSource;
+    List<String> memberIds;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(ConnectionConst.URL);
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+
+        List<Member> members = new ArrayList<>();
+        memberIds = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            String memberId = String.format("agg%04d", i);
+            members.add(new Member(memberId, (i * 37) % 5000));
+            memberIds.add(memberId);
+        }
+        // update()는 잔액을 검사하지 않으므로 음수 잔액도 구간에 들어가야 한다.
+        members.add(new Member("aggneg", -750));
+        memberIds.add("aggneg");
+        new MemberRepositoryV5(dataSource).saveAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        new MemberRepositoryV5(dataSource).deleteAll(memberIds);
+        dataSource.close();
+    }
+
+    @Test
+    void aggregate() {
+        List<Member> all;
+        long start = System.nanoTime();
+        try (Stream<Member> stream = new MemberRepositoryV5(dataSource).streamAll()) {
+            all = stream.toList();
+        }
+        long expectedTotal = all.stream().mapToLong(Member::getMoney).sum();
+        long heapNanos = System.nanoTime() - start;
+
+        List<String> expectedTop = all.stream()
+                .sorted(Comparator.comparingInt(Member::getMoney).reversed().thenComparing(Member::getMemberId))
+                .limit(10)
+                .map(Member::getMemberId)
+                .toList();
+        long expectedRange = all.stream().filter(m -> m.getMoney() >= 1000 && m.getMoney() < 2000).count();
+        SortedMap<Integer, Long> expectedHistogram = all.stream()
+                .collect(Collectors.groupingBy(m -> Math.floorDiv(m.getMoney(), 500) * 500, TreeMap::new, Collectors.counting()));
+
+        for (MemberRepository repository : List.of(new MemberRepositoryV4_2(dataSource), new MemberRepositoryV5(dataSource))) {
+            start = System.nanoTime();
+            long total = repository.totalMoney();
+            long sqlNanos = System.nanoTime() - start;
+            log.info("{} totalMoney heap={}us, sql={}us", repository.getClass().getSimpleName(),
+                    heapNanos / 1000, sqlNanos / 1000);
+
+            Assertions.assertThat(total).isEqualTo(expectedTotal);
+            Assertions.assertThat(repository.topByMoney(10)).extracting(Member::getMemberId).isEqualTo(expectedTop);
+            Assertions.assertThat(repository.countByMoneyRange(1000, 2000)).isEqualTo(expectedRange);
+            Assertions.assertThat(repository.moneyHistogram(500)).isEqualTo(expectedHistogram);
+        }
+    }
+
+    @Test
+    void invalidArguments() {
+        Assertions.assertThatThrownBy(() -> new MemberRepositoryV4_2(dataSource).moneyHistogram(0))
+                .isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThatThrownBy(() -> new MemberRepositoryV5(dataSource).moneyHistogram(0))
+                .isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThatThrownBy(() -> new MemberRepositoryV4_2(dataSource).topByMoney(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThatThrownBy(() -> new MemberRepositoryV5(dataSource).topByMoney(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
@@ -0,0 +1,171 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.MemberSchema;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * saveAll / updateAll / deleteAll - JDBC Batch
+ * 기존 row 단위 반복 호출과 DB 왕복 수 비교
+ */
+@Slf4j
+class MemberRepositoryBatchTest {
+
+    static final int COUNT = 10_000;
+
+    HikariDataSource dataSource;
+    TransactionTemplate txTemplate;
+    List<Member> members;
+    List<String> memberIds;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(ConnectionConst.URL);
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        members = new ArrayList<>();
+        memberIds = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            members.add(new Member("batch" + i, 10000));
+            memberIds.add("batch" + i);
+        }
+    }
+
+    @AfterEach
+    void afterEach() {
+        dataSource.close();
+    }
+
+    @Test
+    void batchV5() {
+        MemberRepository repository = new MemberRepositoryV5(dataSource, 500);
+        crud(repository);
+    }
+
+    @Test
+    void batchV4_2() {
+        MemberRepository repository = new MemberRepositoryV4_2(dataSource, 500);
+        crud(repository);
+    }
+
+    @Test
+    void batchReducesRoundTrips() {
+        CountingDataSource counting = new CountingDataSource(dataSource);
+        MemberRepository repository = new MemberRepositoryV5(counting, 500);
+        TransactionTemplate countingTx = new TransactionTemplate(new DataSourceTransactionManager(counting));
+
+        long loopStart = System.nanoTime();
+        for (Member member : members) {
+            repository.save(member);
+        }
+        long loopTime = System.nanoTime() - loopStart;
+        long loopRoundTrips = counting.executions.getAndSet(0);
+        repository.deleteAll(memberIds);
+
+        counting.executions.set(0);
+        long batchStart = System.nanoTime();
+        countingTx.executeWithoutResult(status -> repository.saveAll(members));
+        long batchTime = System.nanoTime() - batchStart;
+        long batchRoundTrips = counting.executions.get();
+        repository.deleteAll(memberIds);
+
+        log.info("rows={}, loop={}ms ({} round trips), batch={}ms ({} round trips)", COUNT,
+                loopTime / 1_000_000, loopRoundTrips, batchTime / 1_000_000, batchRoundTrips);
+        // 건별 INSERT는 row마다, 배치는 batchSize(500)마다 한 번 DB에 다녀온다.
+        Assertions.assertThat(loopRoundTrips).isEqualTo(COUNT);
+        Assertions.assertThat(batchRoundTrips).isEqualTo(COUNT / 500);
+    }
+
+    private void crud(MemberRepository repository) {
+        // saveAll
+        int[] saved = txTemplate.execute(status -> repository.saveAll(members));
+        Assertions.assertThat(saved).hasSize(COUNT).containsOnly(1);
+
+        // updateAll: money 10000 -> 20000
+        List<Member> updates = new ArrayList<>();
+        for (String memberId : memberIds) {
+            updates.add(new Member(memberId, 20000));
+        }
+        updates.add(new Member("batchNotExists", 20000));
+        int[] updated = txTemplate.execute(status -> repository.updateAll(updates));
+        Assertions.assertThat(updated).hasSize(COUNT + 1);
+        Assertions.assertThat(updated[COUNT]).isEqualTo(0); // 존재하지 않는 회원은 0건
+        Assertions.assertThat(repository.findById("batch0").getMoney()).isEqualTo(20000);
+
+        // deleteAll
+        int[] deleted = txTemplate.execute(status -> repository.deleteAll(memberIds));
+        Assertions.assertThat(deleted).hasSize(COUNT).containsOnly(1);
+    }
+
+    // Statement의 execute* 호출(= DB 왕복) 수를 센다.
+    static class CountingDataSource extends DelegatingDataSource {
+
+        final AtomicLong executions = new AtomicLong();
+
+        CountingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection target = super.getConnection();
+            return proxy(Connection.class, target, (proxy, method, args) -> {
+                Object result = invoke(target, method, args);
+                if (result instanceof PreparedStatement pstmt) {
+                    return proxy(PreparedStatement.class, pstmt, (statementProxy, statementMethod, statementArgs) -> {
+                        if (statementMethod.getName().startsWith("execute")) {
+                            executions.incrementAndGet();
+                        }
+                        return invoke(pstmt, statementMethod, statementArgs);
+                    });
+                }
+                return result;
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.MemberSchema;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * keyset pagination
+ * 1페이지와 10,000페이지의 조회 시간을 OFFSET 방식과 비교
+ */
+@Slf4j
+class MemberRepositoryPageTest {
+
+    static final int PAGE_SIZE = 10;
+    static final int PAGES = 10_000;
+    static final int REPEAT = 200;
+
+    HikariDataSource dataSource;
+    List<String> memberIds;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(ConnectionConst.URL);
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+
+        List<Member> members = new ArrayList<>();
+        memberIds = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE * PAGES; i++) {
+            String memberId = String.format("page%06d", i);
+            members.add(new Member(memberId, i));
+            memberIds.add(memberId);
+        }
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource))
+                .executeWithoutResult(status -> repository.saveAll(members));
+    }
+
+    @AfterEach
+    void afterEach() {
+        new MemberRepositoryV5(dataSource).deleteAll(memberIds);
+        dataSource.close();
+    }
+
+    @Test
+    void findPage() {
+        MemberRepository repository = new MemberRepositoryV4_2(dataSource);
+
+        List<Member> first = repository.findPage("page", PAGE_SIZE);
+        Assertions.assertThat(first).extracting(Member::getMemberId)
+                .containsExactly(memberIds.subList(0, PAGE_SIZE).toArray(new String[0]));
+
+        List<Member> second = repository.findPage(first.get(PAGE_SIZE - 1).getMemberId(), PAGE_SIZE);
+        Assertions.assertThat(second).extracting(Member::getMemberId)
+                .containsExactly(memberIds.subList(PAGE_SIZE, PAGE_SIZE * 2).toArray(new String[0]));
+
+        List<Member> last = repository.findPage(memberIds.get(memberIds.size() - 1), PAGE_SIZE);
+        Assertions.assertThat(last).allMatch(member -> !member.getMemberId().startsWith("page"));
+
+        Assertions.assertThatThrownBy(() -> repository.findPage("page", -1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void pageLatency() {
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+
+        // 10,000 페이지의 시작 키 = 9,999 페이지의 마지막 회원
+        String firstPageKey = "page";
+        String lastPageKey = memberIds.get(PAGE_SIZE * (PAGES - 1) - 1);
+        int lastPageOffset = PAGE_SIZE * (PAGES - 1);
+        String offsetSql = "SELECT * FROM MEMBER WHERE MEMBER_ID LIKE 'page%' ORDER BY MEMBER_ID LIMIT ? OFFSET ?";
+
+        // warm-up
+        for (int i = 0; i < REPEAT; i++) {
+            repository.findPage(firstPageKey, PAGE_SIZE);
+            repository.findPage(lastPageKey, PAGE_SIZE);
+        }
+
+        long keysetFirst = averageNanos(() -> repository.findPage(firstPageKey, PAGE_SIZE));
+        long keysetLast = averageNanos(() -> repository.findPage(lastPageKey, PAGE_SIZE));
+        long offsetFirst = averageNanos(() -> template.queryForList(offsetSql, PAGE_SIZE, 0));
+        long offsetLast = averageNanos(() -> template.queryForList(offsetSql, PAGE_SIZE, lastPageOffset));
+
+        log.info("keyset page1={}us, page{}={}us", keysetFirst / 1000, PAGES, keysetLast / 1000);
+        log.info("offset page1={}us, page{}={}us", offsetFirst / 1000, PAGES, offsetLast / 1000);
+
+        Assertions.assertThat(repository.findPage(lastPageKey, PAGE_SIZE)).extracting(Member::getMemberId)
+                .containsExactly(memberIds.subList(lastPageOffset, lastPageOffset + PAGE_SIZE).toArray(new String[0]));
+    }
+
+    private long averageNanos(Runnable query) {
+        long start = System.nanoTime();
+        for (int i = 0; i < REPEAT; i++) {
+            query.run();
+        }
+        return (System.nanoTime() - start) / REPEAT;
+    }
+
+}
@@ -1,8 +1,10 @@
 package hello.jdbc.repository;
 
+import hello.jdbc.connection.MemberSchema;
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.sql.SQLException;
@@ -15,6 +17,11 @@ class MemberRepositoryV0Test {
 
     MemberRepositoryV0 repositoryV0 = new MemberRepositoryV0();
 
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
     @Test
     void crud() throws SQLException {
         Member member = new Member("memberV0", 10000);
@@ -2,8 +2,10 @@ package hello.jdbc.repository;
 
 import com.zaxxer.hikari.HikariDataSource;
 import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.MemberSchema;
 import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
@@ -16,6 +18,11 @@ class MemberRepositoryV1Test {
 
     MemberRepositoryV1 repositoryV1;
 
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
     @BeforeEach // 각 테스트가 실행되기 전에 실행
     void beforeEach() {
         // 기본 DriverManager - 항상 새로운 커넥션을 획득 (밑의 코드에서 CRUD할 때마다)
@@ -0,0 +1,131 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.MemberSchema;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+@Slf4j
+class MemberRepositoryV5Test {
+
+    static final int COUNT = 250;
+
+    HikariDataSource dataSource;
+    MemberRepository repository;
+    List<String> memberIds;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(ConnectionConst.URL);
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+
+        repository = new MemberRepositoryV5(dataSource);
+
+        List<Member> members = new ArrayList<>();
+        memberIds = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            String memberId = String.format("v5m%04d", i);
+            members.add(new Member(memberId, i));
+            memberIds.add(memberId);
+        }
+        repository.saveAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.deleteAll(memberIds);
+        dataSource.close();
+    }
+
+    @Test
+    void findAllByIds() {
+        // MemberIdChunks.CHUNK_SIZE(100)를 넘는 키 + 존재하지 않는 키
+        List<String> ids = new ArrayList<>(memberIds);
+        ids.add("v5notExists");
+
+        Map<String, Member> result = repository.findAllByIds(ids);
+
+        Assertions.assertThat(result).hasSize(COUNT);
+        Assertions.assertThat(result).doesNotContainKey("v5notExists");
+        Assertions.assertThat(result.get("v5m0123").getMoney()).isEqualTo(123);
+    }
+
+    @Test
+    void streamAll() {
+        // 커넥션 풀 크기(10)보다 많이 열고 닫아도 커넥션이 반납되어 고갈되지 않아야 한다.
+        for (int i = 0; i < 20; i++) {
+            try (Stream<Member> members = repository.streamAll()) {
+                long count = members.filter(member -> member.getMemberId().startsWith("v5m")).count();
+                Assertions.assertThat(count).isEqualTo(COUNT);
+            }
+        }
+    }
+
+    @Test
+    void streamAllInTransaction() {
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        txTemplate.executeWithoutResult(status -> {
+            repository.update("v5m0000", 999);
+            // 트랜잭션에 묶인 같은 커넥션으로 조회하므로 커밋 전 변경 내용이 보인다.
+            try (Stream<Member> members = repository.streamAll()) {
+                Assertions.assertThat(members.filter(member -> member.getMemberId().equals("v5m0000")))
+                        .extracting(Member::getMoney)
+                        .containsExactly(999);
+            }
+            status.setRollbackOnly();
+        });
+
+        Assertions.assertThat(repository.findById("v5m0000").getMoney()).isEqualTo(0);
+    }
+
+    @Test
+    void forEachMember() {
+        AtomicInteger count = new AtomicInteger();
+        repository.forEachMember(member -> {
+            if (member.getMemberId().startsWith("v5m")) {
+                count.incrementAndGet();
+            }
+        });
+        Assertions.assertThat(count.get()).isEqualTo(COUNT);
+    }
+
+    @Test
+    void optimisticUpdate() {
+        Member member = repository.findById("v5m0001");
+        Member concurrent = repository.findById("v5m0001");
+
+        member.setMoney(5000);
+        repository.update(member);
+        Assertions.assertThat(member.getVersion()).isEqualTo(concurrent.getVersion() + 1);
+
+        // 먼저 읽었던 version으로는 수정할 수 없다.
+        concurrent.setMoney(7000);
+        Assertions.assertThatThrownBy(() -> repository.update(concurrent))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        Assertions.assertThat(repository.findById("v5m0001").getMoney()).isEqualTo(5000);
+    }
+
+}
@@ -0,0 +1,335 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+@Slf4j
+class ShardedMemberRepositoryTest {
+
+    static final int SHARDS = 3;
+    static final int COUNT = 2000;
+    static final int WORKERS = 4;
+
+    Map<String, HikariDataSource> dataSources = new LinkedHashMap<>();
+    ShardedMemberRepository repository;
+    List<String> memberIds;
+
+    @BeforeEach
+    void beforeEach() {
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        for (int i = 0; i < SHARDS; i++) {
+            shards.put("shard" + i, dataSource("shard" + i));
+        }
+        repository = new ShardedMemberRepository(shards);
+
+        List<Member> members = new ArrayList<>();
+        memberIds = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            String memberId = String.format("sh%04d", i);
+            members.add(new Member(memberId, i));
+            memberIds.add(memberId);
+        }
+        repository.saveAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.close();
+        dataSources.values().forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void route() {
+        for (String name : repository.getShardNames()) {
+            long count = count(name);
+            log.info("{} count={}", name, count);
+            // 가상 노드 64개면 한 shard에 지나치게 몰리지 않는다.
+            Assertions.assertThat(count).isBetween(COUNT / SHARDS / 2L, COUNT / SHARDS * 2L);
+        }
+        Assertions.assertThat(dataSources.keySet().stream().mapToLong(this::count).sum()).isEqualTo(COUNT);
+
+        Member member = repository.findById("sh0042");
+        Assertions.assertThat(member.getMoney()).isEqualTo(42);
+        Assertions.assertThat(new JdbcTemplate(dataSources.get(repository.shardOf("sh0042")))
+                .queryForObject("SELECT MONEY FROM MEMBER WHERE MEMBER_ID = 'sh0042'", Integer.class)).isEqualTo(42);
+
+        repository.update(member.getMemberId(), 4200);
+        Assertions.assertThat(repository.findById("sh0042").getMoney()).isEqualTo(4200);
+    }
+
+    @Test
+    void scatterGather() {
+        List<String> ids = new ArrayList<>(memberIds);
+        ids.add("shNone");
+        Assertions.assertThat(repository.findAllByIds(ids)).hasSize(COUNT).doesNotContainKey("shNone");
+
+        Assertions.assertThat(repository.totalMoney()).isEqualTo((long) COUNT * (COUNT - 1) / 2);
+        Assertions.assertThat(repository.topByMoney(3)).extracting(Member::getMemberId)
+                .containsExactly("sh1999", "sh1998", "sh1997");
+        Assertions.assertThat(repository.countByMoneyRange(100, 200)).isEqualTo(100);
+        Assertions.assertThat(repository.moneyHistogram(500))
+                .containsExactly(Map.entry(0, 500L), Map.entry(500, 500L), Map.entry(1000, 500L), Map.entry(1500, 500L));
+
+        // 페이지를 이어서 읽으면 shard와 상관없이 MEMBER_ID 순서로 전체가 나온다.
+        List<String> paged = new ArrayList<>();
+        List<Member> page = repository.findPage(null, 300);
+        while (!page.isEmpty()) {
+            page.forEach(member -> paged.add(member.getMemberId()));
+            page = repository.findPage(page.get(page.size() - 1).getMemberId(), 300);
+        }
+        Assertions.assertThat(paged).isEqualTo(memberIds);
+
+        try (Stream<Member> members = repository.streamAll()) {
+            Assertions.assertThat(members.count()).isEqualTo(COUNT);
+        }
+
+        int[] counts = repository.adjustBalanceAll(Map.of("sh0001", 10, "sh0002", -10));
+        Assertions.assertThat(counts).containsExactlyInAnyOrder(1, 0);
+    }
+
+    @Test
+    void transfer() {
+        String from = memberIds.get(COUNT - 1);
+        String local = memberIds.stream()
+                .filter(id -> !id.equals(from) && repository.shardOf(id).equals(repository.shardOf(from)))
+                .findFirst().orElseThrow();
+        String remote = memberIds.stream()
+                .filter(id -> !repository.shardOf(id).equals(repository.shardOf(from)))
+                .findFirst().orElseThrow();
+        int localMoney = repository.findById(local).getMoney();
+        int remoteMoney = repository.findById(remote).getMoney();
+
+        repository.transfer(from, local, 100);
+        repository.transfer(from, remote, 100);
+
+        Assertions.assertThat(repository.findById(from).getMoney()).isEqualTo(1999 - 200);
+        Assertions.assertThat(repository.findById(local).getMoney()).isEqualTo(localMoney + 100);
+        Assertions.assertThat(repository.findById(remote).getMoney()).isEqualTo(remoteMoney + 100);
+        Assertions.assertThat(repository.getLocalTransferCount()).isEqualTo(1);
+        Assertions.assertThat(repository.getCrossShardTransferCount()).isEqualTo(1);
+
+        // 잔액 부족 - 1단계에서 실패하므로 보상할 것이 없다.
+        Assertions.assertThatThrownBy(() -> repository.transfer(from, remote, 1_000_000))
+                .isInstanceOf(IllegalStateException.class);
+        Assertions.assertThat(repository.getCompensationCount()).isZero();
+
+        // 입금 shard에 회원이 없으면 출금을 보상한다.
+        String missing = Stream.iterate(0, i -> i + 1).map(i -> "shNone" + i)
+                .filter(id -> !repository.shardOf(id).equals(repository.shardOf(from)))
+                .findFirst().orElseThrow();
+        Assertions.assertThatThrownBy(() -> repository.transfer(from, missing, 100))
+                .isInstanceOf(IllegalStateException.class);
+        Assertions.assertThat(repository.getCompensationCount()).isEqualTo(1);
+        Assertions.assertThat(repository.getCompensationFailureCount()).isZero();
+        Assertions.assertThat(repository.findById(from).getMoney()).isEqualTo(1999 - 200);
+        Assertions.assertThat(repository.totalMoney()).isEqualTo((long) COUNT * (COUNT - 1) / 2);
+    }
+
+    @Test
+    void reshardOnline() throws Exception {
+        long total = repository.totalMoney();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // resharding 중에도 이체와 조회가 계속 성공해야 한다.
+        // 보내는 쪽은 잔액이 1000 이상이고 1씩 보내므로 잔액 부족은 없다. 어떤 예외든 회원을 잃어버린 것이다.
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < WORKERS; i++) {
+            workers.add(worker(running, failure, () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                repository.transfer(memberIds.get(random.nextInt(1000, COUNT)), memberIds.get(random.nextInt(COUNT)), 1);
+                repository.findById(memberIds.get(random.nextInt(COUNT)));
+            }));
+        }
+        // 집계는 옮기는 도중의 중복/누락을 보면 안 된다.
+        // 회원 수는 정확해야 하고, 합계는 진행 중인 shard 간 이체(worker당 최대 1)만큼만 달라질 수 있다.
+        workers.add(worker(running, failure, () -> {
+            Assertions.assertThat(repository.countByMoneyRange(Integer.MIN_VALUE, Integer.MAX_VALUE)).isEqualTo(COUNT);
+            Assertions.assertThat(repository.totalMoney()).isBetween(total - WORKERS, total + WORKERS);
+        }));
+
+        int added = repository.addShard("shard3", dataSource("shard3"));
+        int removed = repository.removeShard("shard0");
+
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Assertions.assertThat(failure.get()).isNull();
+
+        log.info("added moved={}, removed moved={}", added, removed);
+        Assertions.assertThat(added).isPositive();
+        Assertions.assertThat(count("shard0")).isZero();
+
+        assertOwnership(repository, List.of("shard1", "shard2", "shard3"));
+        Assertions.assertThat(repository.findAllByIds(memberIds)).hasSize(COUNT);
+        Assertions.assertThat(repository.totalMoney()).isEqualTo(total);
+        Assertions.assertThat(repository.getCompensationFailureCount()).isZero();
+    }
+
+    @Test
+    void keepVersionWhenMoved() {
+        Member member = repository.findById("sh0007");
+        member.setMoney(700);
+        repository.update(member);
+
+        repository.addShard("shard3", dataSource("shard3"));
+        repository.removeShard(repository.shardOf("sh0007"));
+
+        // 옮겨진 뒤에도 먼저 읽은 version으로 수정할 수 있다.
+        member.setMoney(7000);
+        repository.update(member);
+        Assertions.assertThat(repository.findById("sh0007").getMoney()).isEqualTo(7000);
+    }
+
+    @Test
+    void copyFailureLeavesNoDuplicates() {
+        long total = repository.totalMoney();
+        // shard2로 가는 구간의 복사가 실패한다.
+        FailingDataSource shard2 = new FailingDataSource(dataSources.get("shard2"));
+        ShardedMemberRepository failing = new ShardedMemberRepository(
+                Map.of("shard0", dataSources.get("shard0"), "shard1", dataSources.get("shard1"), "shard2", shard2));
+        try {
+            shard2.failOn = "MERGE";
+            Assertions.assertThatThrownBy(() -> failing.removeShard("shard0")).isInstanceOf(DataAccessException.class);
+
+            // 실패 직전 구간까지만 옮겨진 상태로 일관되어야 한다.
+            assertOwnership(failing, List.of("shard0", "shard1", "shard2"));
+            Assertions.assertThat(failing.totalMoney()).isEqualTo(total);
+            Assertions.assertThat(failing.findAllByIds(memberIds)).hasSize(COUNT);
+
+            // 원인이 사라지면 다시 실행해서 마저 옮긴다.
+            shard2.failOn = null;
+            failing.removeShard("shard0");
+            Assertions.assertThat(count("shard0")).isZero();
+            assertOwnership(failing, List.of("shard1", "shard2"));
+            Assertions.assertThat(failing.totalMoney()).isEqualTo(total);
+        } finally {
+            failing.close();
+        }
+    }
+
+    @Test
+    void deleteFailureIsCleanedUp() {
+        long total = repository.totalMoney();
+        // 링을 바꾼 뒤 원본(shard0)에서 삭제가 실패한다.
+        FailingDataSource shard0 = new FailingDataSource(dataSources.get("shard0"));
+        ShardedMemberRepository failing = new ShardedMemberRepository(
+                Map.of("shard0", shard0, "shard1", dataSources.get("shard1"), "shard2", dataSources.get("shard2")));
+        try {
+            shard0.failOn = "DELETE";
+            failing.addShard("shard3", dataSource("shard3"));
+            Assertions.assertThat(failing.getPendingCleanupCount()).isPositive();
+            Assertions.assertThat(dataSources.keySet().stream().mapToLong(this::count).sum()).isGreaterThan(COUNT);
+
+            // 중복된 행이 남아 있는 동안 집계는 틀린 값 대신 예외를 던진다.
+            Assertions.assertThatThrownBy(failing::totalMoney).isInstanceOf(TransientDataAccessResourceException.class);
+            Assertions.assertThatThrownBy(() -> failing.findPage(null, 10))
+                    .isInstanceOf(TransientDataAccessResourceException.class);
+            // 단건 조회는 주인 shard에서 읽으므로 영향이 없다.
+            Assertions.assertThat(failing.findAllByIds(memberIds)).hasSize(COUNT);
+
+            shard0.failOn = null;
+            Assertions.assertThat(failing.totalMoney()).isEqualTo(total);
+            Assertions.assertThat(failing.getPendingCleanupCount()).isZero();
+            assertOwnership(failing, List.of("shard0", "shard1", "shard2", "shard3"));
+        } finally {
+            failing.close();
+        }
+    }
+
+    private Thread worker(AtomicBoolean running, AtomicReference<Throwable> failure, Runnable task) {
+        Thread worker = new Thread(() -> {
+            while (running.get() && failure.get() == null) {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        });
+        worker.start();
+        return worker;
+    }
+
+    // 모든 회원이 정확히 한 shard에, 링이 가리키는 곳에 있다.
+    private void assertOwnership(ShardedMemberRepository repository, List<String> shardNames) {
+        Assertions.assertThat(repository.getShardNames()).containsExactlyElementsOf(shardNames);
+        Assertions.assertThat(dataSources.keySet().stream().mapToLong(this::count).sum()).isEqualTo(COUNT);
+        for (String name : dataSources.keySet()) {
+            List<String> stored = new JdbcTemplate(dataSources.get(name))
+                    .queryForList("SELECT MEMBER_ID FROM MEMBER", String.class);
+            Assertions.assertThat(stored).allMatch(id -> repository.shardOf(id).equals(name));
+        }
+    }
+
+    private DataSource dataSource(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSources.put(name, dataSource);
+
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("DROP TABLE IF EXISTS MEMBER");
+        template.execute("CREATE TABLE MEMBER (MEMBER_ID VARCHAR(10), MONEY INTEGER NOT NULL DEFAULT 0, "
+                + "VERSION BIGINT NOT NULL DEFAULT 0, PRIMARY KEY (MEMBER_ID))");
+        template.execute("CREATE INDEX IDX_MEMBER_MONEY ON MEMBER (MONEY DESC, MEMBER_ID)");
+        return dataSource;
+    }
+
+    private long count(String shard) {
+        return new JdbcTemplate(dataSources.get(shard)).queryForObject("SELECT COUNT(*) FROM MEMBER", Long.class);
+    }
+
+    /**
+     * failOn으로 시작하는 SQL을 준비할 때 SQLException을 던지는 DataSource
+     */
+    static class FailingDataSource extends DelegatingDataSource {
+
+        volatile String failOn;
+
+        FailingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection target = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        String prefix = failOn;
+                        if (prefix != null && method.getName().startsWith("prepare")
+                                && args[0] instanceof String sql && sql.startsWith(prefix)) {
+                            throw new SQLException("injected failure: " + sql);
+                        }
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+
+}
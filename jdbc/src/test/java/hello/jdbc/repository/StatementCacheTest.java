@@ -0,0 +1,109 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.MemberSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.service.MemberServiceV3_1;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.SQLException;
+
+/**
+ * PreparedStatement 캐시
+ * H2 TCP 모드에서 accountTransfer 1건당 prepare 시간 비교
+ */
+@Slf4j
+class StatementCacheTest {
+
+    public static final String MEMBER_A = "stmtA";
+    public static final String MEMBER_B = "stmtB";
+    static final int TRANSFERS = 1000;
+
+    HikariDataSource dataSource;
+    PlatformTransactionManager transactionManager;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() throws SQLException {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(ConnectionConst.URL);
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+
+        MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource);
+        repository.save(new Member(MEMBER_A, TRANSFERS * 10));
+        repository.save(new Member(MEMBER_B, 0));
+    }
+
+    @AfterEach
+    void afterEach() throws SQLException {
+        MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource);
+        repository.delete(MEMBER_A);
+        repository.delete(MEMBER_B);
+        dataSource.close();
+    }
+
+    @Test
+    void reuseInTransaction() throws SQLException {
+        StatementCache statementCache = new StatementCache();
+        MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource, statementCache);
+        MemberServiceV3_1 memberService = new MemberServiceV3_1(transactionManager, repository);
+
+        memberService.accountTransfer(MEMBER_A, MEMBER_B, 10);
+
+        // findById 2번, update 2번 -> SQL 2종류만 prepare
+        Assertions.assertThat(statementCache.getMissCount()).isEqualTo(2);
+        Assertions.assertThat(statementCache.getHitCount()).isEqualTo(2);
+        Assertions.assertThat(repository.findById(MEMBER_B).getMoney()).isEqualTo(10);
+    }
+
+    @Test
+    void notCachedWithoutTransaction() throws SQLException {
+        StatementCache statementCache = new StatementCache();
+        MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource, statementCache);
+
+        repository.findById(MEMBER_A);
+        repository.findById(MEMBER_A);
+
+        Assertions.assertThat(statementCache.getHitCount()).isEqualTo(0);
+        Assertions.assertThat(statementCache.getMissCount()).isEqualTo(0);
+    }
+
+    @Test
+    void compareTransferTime() throws SQLException {
+        long disabled = transferNanos(StatementCache.disabled());
+        long cached = transferNanos(new StatementCache());
+        log.info("accountTransfer avg disabled={}us, cached={}us, saved={}us",
+                disabled / 1000, cached / 1000, (disabled - cached) / 1000);
+    }
+
+    private long transferNanos(StatementCache statementCache) throws SQLException {
+        MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource, statementCache);
+        MemberServiceV3_1 memberService = new MemberServiceV3_1(transactionManager, repository);
+
+        // warm-up
+        for (int i = 0; i < TRANSFERS / 10; i++) {
+            memberService.accountTransfer(MEMBER_A, MEMBER_B, 1);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < TRANSFERS; i++) {
+            memberService.accountTransfer(MEMBER_A, MEMBER_B, 1);
+        }
+        return (System.nanoTime() - start) / TRANSFERS;
+    }
+
+}
@@ -0,0 +1,193 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.LatencyHistogram;
+import hello.jdbc.connection.MemberSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 그룹 커밋 이체
+ */
+@Slf4j
+class GroupCommitTransferServiceTest {
+
+    static final int PAIRS = 50;
+    static final int THREADS = 16;
+    static final int TRANSFERS_PER_THREAD = 500;
+
+    HikariDataSource dataSource;
+    PlatformTransactionManager transactionManager;
+    MemberRepository memberRepository;
+    List<String> memberIds;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(ConnectionConst.URL);
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        memberRepository = new MemberRepositoryV5(dataSource);
+
+        List<Member> members = new ArrayList<>();
+        memberIds = new ArrayList<>();
+        for (int i = 0; i < PAIRS * 2; i++) {
+            members.add(new Member("gc" + i, 1_000_000));
+            memberIds.add("gc" + i);
+        }
+        memberRepository.saveAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.deleteAll(memberIds);
+        memberRepository.delete("ex");
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("실패한 이체만 savepoint로 롤백")
+    void isolateFailedTransfer() {
+        memberRepository.save(new Member("ex", 0));
+
+        List<CompletableFuture<TransferResult>> futures;
+        try (GroupCommitTransferService service = new GroupCommitTransferService(transactionManager, memberRepository,
+                10, Duration.ofMillis(100))) {
+            futures = List.of(
+                    service.submit("gc0", "gc1", 1000),
+                    service.submit("gc2", "ex", 1000), // 검증 실패 - 출금 후 롤백되어야 한다
+                    service.submit("gc3", "gc4", 5_000_000), // 잔액 부족
+                    service.submit("gc5", "gc6", 1000));
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        }
+
+        Assertions.assertThat(futures).extracting(future -> future.join().success())
+                .containsExactly(true, false, false, true);
+        Assertions.assertThat(memberRepository.findById("gc0").getMoney()).isEqualTo(999_000);
+        Assertions.assertThat(memberRepository.findById("gc1").getMoney()).isEqualTo(1_001_000);
+        Assertions.assertThat(memberRepository.findById("gc2").getMoney()).isEqualTo(1_000_000);
+        Assertions.assertThat(memberRepository.findById("ex").getMoney()).isEqualTo(0);
+        Assertions.assertThat(memberRepository.findById("gc6").getMoney()).isEqualTo(1_001_000);
+    }
+
+    @Test
+    @DisplayName("DB 예외가 난 이체만 savepoint로 롤백")
+    void isolateDataAccessException() {
+        memberRepository.save(new Member("gcmax", Integer.MAX_VALUE));
+        memberIds.add("gcmax");
+
+        List<CompletableFuture<TransferResult>> futures;
+        try (GroupCommitTransferService service = new GroupCommitTransferService(transactionManager, memberRepository,
+                10, Duration.ofMillis(100))) {
+            futures = List.of(
+                    service.submit("gc0", "gc1", 1000),
+                    service.submit("gc2", "gcmax", 1000), // 입금 시 INTEGER 범위 초과 - DataAccessException
+                    service.submit("gc5", "gc6", 1000));
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        }
+
+        Assertions.assertThat(futures).extracting(future -> future.join().success())
+                .containsExactly(true, false, true);
+        Assertions.assertThat(futures.get(1).join().failureReason()).isNotBlank();
+        Assertions.assertThat(memberRepository.findById("gc1").getMoney()).isEqualTo(1_001_000);
+        Assertions.assertThat(memberRepository.findById("gc2").getMoney()).isEqualTo(1_000_000);
+        Assertions.assertThat(memberRepository.findById("gcmax").getMoney()).isEqualTo(Integer.MAX_VALUE);
+        Assertions.assertThat(memberRepository.findById("gc6").getMoney()).isEqualTo(1_001_000);
+    }
+
+    @Test
+    @DisplayName("동시 부하 - 건별 커밋 vs 그룹 커밋")
+    void compareWithPerTransferCommit() throws Exception {
+        MemberServiceV4 memberService = new MemberServiceV4(memberRepository);
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+        LatencyHistogram plainLatency = new LatencyHistogram();
+
+        long plainNanos = runConcurrently((fromId, toId) -> {
+            long start = System.nanoTime();
+            txTemplate.executeWithoutResult(status -> memberService.accountTransfer(fromId, toId, 1));
+            plainLatency.record(System.nanoTime() - start);
+        });
+
+        long groupNanos;
+        GroupCommitTransferService groupService = new GroupCommitTransferService(transactionManager, memberRepository);
+        try (groupService) {
+            groupNanos = runConcurrently((fromId, toId) ->
+                    Assertions.assertThat(groupService.submit(fromId, toId, 1).join().success()).isTrue());
+        }
+
+        int total = THREADS * TRANSFERS_PER_THREAD;
+        log.info("per-transfer commit: {}/s, {}", throughput(total, plainNanos), plainLatency);
+        log.info("group commit: {}/s, {}", throughput(total, groupNanos), groupService.getLatency());
+        log.info("group commit batches={}, meanSize={}, distribution={}", groupService.getBatchCount(),
+                String.format("%.1f", groupService.getMeanBatchSize()), groupService.getBatchSizeDistribution());
+
+        Assertions.assertThat(groupService.getBatchSizeDistribution().values().stream().mapToLong(Long::longValue).sum())
+                .isEqualTo(groupService.getBatchCount());
+        long sum = memberRepository.findAllByIds(memberIds).values().stream().mapToLong(Member::getMoney).sum();
+        Assertions.assertThat(sum).isEqualTo(PAIRS * 2 * 1_000_000L);
+    }
+
+    private long runConcurrently(TransferCall call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        // 쌍마다 이체 방향을 고정해서 건별 커밋 쪽에서도 교착 상태가 생기지 않게 한다.
+                        int pair = ThreadLocalRandom.current().nextInt(PAIRS);
+                        call.transfer("gc" + pair * 2, "gc" + (pair * 2 + 1));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long throughput(int count, long nanos) {
+        return (long) (count / (nanos / 1_000_000_000.0));
+    }
+
+    @FunctionalInterface
+    interface TransferCall {
+        void transfer(String fromId, String toId);
+    }
+
+}
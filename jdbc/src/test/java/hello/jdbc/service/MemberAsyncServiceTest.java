@@ -0,0 +1,168 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * CompletableFuture 비동기 facade
+ */
+@Slf4j
+@SpringBootTest
+class MemberAsyncServiceTest {
+
+    public static final String MEMBER_A = "asyncA";
+    public static final String MEMBER_B = "asyncB";
+    public static final String MEMBER_EX = "ex";
+
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private MemberServiceV4 memberService;
+
+    @TestConfiguration
+    static class TestConfig {
+
+        private final DataSource dataSource;
+
+        public TestConfig(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV4_2(dataSource);
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+    }
+
+    @AfterEach
+    void after() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @Test
+    @DisplayName("비동기 이체 + 조회 fan-out")
+    void transferAndFindAsync() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        try (MemberAsyncService asyncService = new MemberAsyncService(memberService, 4)) {
+            asyncService.accountTransferAsync(MEMBER_A, MEMBER_B, 2000).join();
+
+            CompletableFuture<Member> memberA = asyncService.findByIdAsync(MEMBER_A);
+            CompletableFuture<Member> memberB = asyncService.findByIdAsync(MEMBER_B);
+            CompletableFuture.allOf(memberA, memberB).join();
+
+            Assertions.assertThat(memberA.join().getMoney()).isEqualTo(8000);
+            Assertions.assertThat(memberB.join().getMoney()).isEqualTo(12000);
+        }
+    }
+
+    @Test
+    @DisplayName("작업 스레드에서 예외가 나면 롤백되고 future가 실패한다")
+    void transferAsyncRollback() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        try (MemberAsyncService asyncService = new MemberAsyncService(memberService, 2)) {
+            Assertions.assertThatThrownBy(() -> asyncService.accountTransferAsync(MEMBER_A, MEMBER_EX, 2000).join())
+                    .isInstanceOf(CompletionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+        }
+
+        Assertions.assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        Assertions.assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("대기열이 가득 차면 거절된 요청은 실패한 future가 된다")
+    void rejectWhenQueueFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MemberServiceV4 blockingService = blockingService(started, release);
+
+        try (MemberAsyncService asyncService = new MemberAsyncService(blockingService, 1, 1, new ThreadPoolExecutor.AbortPolicy())) {
+            CompletableFuture<Member> running = asyncService.findByIdAsync(MEMBER_A);
+            started.await();
+            CompletableFuture<Member> queued = asyncService.findByIdAsync(MEMBER_A);
+            CompletableFuture<Member> rejected = asyncService.findByIdAsync(MEMBER_A);
+
+            Assertions.assertThat(asyncService.getQueueDepth()).isEqualTo(1);
+            Assertions.assertThat(asyncService.getRejectedCount()).isEqualTo(1);
+            Assertions.assertThat(asyncService.getRejectionPolicy()).isEqualTo("AbortPolicy");
+            Assertions.assertThatThrownBy(rejected::join).hasCauseInstanceOf(RejectedExecutionException.class);
+
+            release.countDown();
+            CompletableFuture.allOf(running, queued).join();
+        }
+    }
+
+    @Test
+    @DisplayName("Discard 계열 정책으로 버려진 요청도 실패한 future로 완료된다")
+    void discardedTaskCompletesExceptionally() throws Exception {
+        for (RejectedExecutionHandler policy : List.of(new ThreadPoolExecutor.DiscardPolicy(),
+                new ThreadPoolExecutor.DiscardOldestPolicy())) {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+
+            try (MemberAsyncService asyncService = new MemberAsyncService(blockingService(started, release), 1, 1, policy)) {
+                CompletableFuture<Member> running = asyncService.findByIdAsync(MEMBER_A);
+                started.await();
+                CompletableFuture<Member> queued = asyncService.findByIdAsync(MEMBER_A);
+                CompletableFuture<Member> latest = asyncService.findByIdAsync(MEMBER_A);
+
+                // DiscardPolicy는 새 요청을, DiscardOldestPolicy는 대기열의 가장 오래된 요청을 버린다.
+                boolean discardLatest = policy instanceof ThreadPoolExecutor.DiscardPolicy;
+                CompletableFuture<Member> dropped = discardLatest ? latest : queued;
+                CompletableFuture<Member> kept = discardLatest ? queued : latest;
+                Assertions.assertThat(dropped).isCompletedExceptionally();
+                Assertions.assertThatThrownBy(dropped::join).hasCauseInstanceOf(RejectedExecutionException.class);
+
+                release.countDown();
+                CompletableFuture.allOf(running, kept).get(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private MemberServiceV4 blockingService(CountDownLatch started, CountDownLatch release) {
+        return new MemberServiceV4(memberRepository) {
+            @Override
+            public Member findById(String memberId) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,145 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.MemberSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 대량 이체 - accountTransferAll
+ */
+@Slf4j
+class MemberBatchTransferServiceTest {
+
+    static final int ACCOUNTS = 100;
+    static final int TRANSFERS = 2000;
+
+    HikariDataSource dataSource;
+    PlatformTransactionManager transactionManager;
+    MemberRepository memberRepository;
+    List<String> memberIds;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(ConnectionConst.URL);
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        memberRepository = new MemberRepositoryV5(dataSource);
+
+        List<Member> members = new ArrayList<>();
+        memberIds = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member("bt" + i, 1_000_000));
+            memberIds.add("bt" + i);
+        }
+        memberRepository.saveAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.deleteAll(memberIds);
+        memberRepository.delete("ex");
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("건별 결과")
+    void perTransferResult() {
+        memberRepository.save(new Member("ex", 0));
+        MemberBatchTransferService service = new MemberBatchTransferService(transactionManager, memberRepository);
+
+        List<TransferResult> results = service.accountTransferAll(List.of(
+                new Transfer("bt0", "bt1", 1000),
+                new Transfer("bt1", "bt2", 5_000_000), // 잔액 부족
+                new Transfer("bt0", "notExists", 1000), // 회원 없음
+                new Transfer("bt0", "ex", 1000), // 검증 실패
+                new Transfer("bt2", "bt0", 500)));
+
+        Assertions.assertThat(results).extracting(TransferResult::success)
+                .containsExactly(true, false, false, false, true);
+
+        Map<String, Member> members = memberRepository.findAllByIds(List.of("bt0", "bt1", "bt2"));
+        Assertions.assertThat(members.get("bt0").getMoney()).isEqualTo(1_000_000 - 1000 + 500);
+        Assertions.assertThat(members.get("bt1").getMoney()).isEqualTo(1_000_000 + 1000);
+        Assertions.assertThat(members.get("bt2").getMoney()).isEqualTo(1_000_000 - 500);
+    }
+
+    @Test
+    @DisplayName("DB 예외가 난 chunk만 실패")
+    void failedChunkKeepsOtherResults() {
+        memberRepository.save(new Member("btmax", Integer.MAX_VALUE));
+        memberIds.add("btmax");
+        MemberBatchTransferService service = new MemberBatchTransferService(transactionManager, memberRepository, 2);
+
+        List<TransferResult> results = service.accountTransferAll(List.of(
+                new Transfer("bt0", "bt1", 1000),
+                new Transfer("bt2", "bt3", 1000),
+                new Transfer("bt4", "btmax", 1000), // 입금 시 INTEGER 범위 초과 - DataAccessException
+                new Transfer("bt5", "bt6", 1000),
+                new Transfer("bt7", "bt8", 1000)));
+
+        Assertions.assertThat(results).extracting(TransferResult::success)
+                .containsExactly(true, true, false, false, true);
+
+        Map<String, Member> members = memberRepository.findAllByIds(List.of("bt1", "bt4", "bt6", "bt8", "btmax"));
+        Assertions.assertThat(members.get("bt1").getMoney()).isEqualTo(1_000_000 + 1000);
+        Assertions.assertThat(members.get("bt4").getMoney()).isEqualTo(1_000_000);
+        Assertions.assertThat(members.get("bt6").getMoney()).isEqualTo(1_000_000);
+        Assertions.assertThat(members.get("btmax").getMoney()).isEqualTo(Integer.MAX_VALUE);
+        Assertions.assertThat(members.get("bt8").getMoney()).isEqualTo(1_000_000 + 1000);
+    }
+
+    @Test
+    @DisplayName("accountTransfer 반복 호출과 처리량 비교")
+    void compareWithLoop() {
+        List<Transfer> transfers = new ArrayList<>();
+        for (int i = 0; i < TRANSFERS; i++) {
+            transfers.add(new Transfer("bt" + (i % ACCOUNTS), "bt" + ((i * 7 + 1) % ACCOUNTS), 1));
+        }
+
+        // @Transactional 프록시 대신 TransactionTemplate으로 건마다 트랜잭션을 건다.
+        MemberServiceV4 memberService = new MemberServiceV4(memberRepository);
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+        long loopStart = System.nanoTime();
+        for (Transfer transfer : transfers) {
+            txTemplate.executeWithoutResult(status ->
+                    memberService.accountTransfer(transfer.fromId(), transfer.toId(), transfer.money()));
+        }
+        long loopTime = System.nanoTime() - loopStart;
+
+        MemberBatchTransferService batchService = new MemberBatchTransferService(transactionManager, memberRepository, 500);
+        long batchStart = System.nanoTime();
+        List<TransferResult> results = batchService.accountTransferAll(transfers);
+        long batchTime = System.nanoTime() - batchStart;
+
+        Assertions.assertThat(results).allMatch(TransferResult::success);
+        log.info("transfers={}, loop={}ms ({} tps), batch={}ms ({} tps)", TRANSFERS,
+                loopTime / 1_000_000, TRANSFERS * 1_000_000_000L / loopTime,
+                batchTime / 1_000_000, TRANSFERS * 1_000_000_000L / batchTime);
+    }
+
+}
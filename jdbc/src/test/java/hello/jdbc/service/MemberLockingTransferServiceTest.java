@@ -0,0 +1,161 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * striped lock으로 같은 회원의 이체 직렬화
+ * 여러 스레드가 소수의 회원끼리 양방향으로 이체해도 회원마다 잔액이 맞아야 한다.
+ *
+ * MemberServiceV4는 MONEY = MONEY + ? 로 증감하므로 lock이 없어도 갱신 손실이 없다.
+ * 그래서 잔액을 조회 후 덮어쓰는(read-modify-write) 저장소를 사용해서 lock이 실제로 이체를 직렬화하는지 확인한다.
+ * lock이 없으면 갱신 손실로 잔액이 어긋나거나, 반대 방향 이체끼리 DB에서 교착 상태가 된다.
+ */
+@Slf4j
+@SpringBootTest
+class MemberLockingTransferServiceTest {
+
+    static final int ACCOUNTS = 4;
+    static final int THREADS = 8;
+    static final int TRANSFERS_PER_THREAD = 200;
+
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private MemberLockingTransferService lockingService;
+    @Autowired
+    private AccountLockManager lockManager;
+
+    @TestConfiguration
+    static class TestConfig {
+
+        private final DataSource dataSource;
+
+        public TestConfig(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new ReadModifyWriteRepository(dataSource);
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+
+        @Bean
+        AccountLockManager accountLockManager() {
+            return new AccountLockManager();
+        }
+
+        @Bean
+        MemberLockingTransferService memberLockingTransferService(MemberServiceV4 memberServiceV4) {
+            return new MemberLockingTransferService(memberServiceV4, accountLockManager());
+        }
+    }
+
+    @BeforeEach
+    void before() {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            memberRepository.save(new Member("lock" + i, 100_000));
+        }
+    }
+
+    @AfterEach
+    void after() {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            memberRepository.delete("lock" + i);
+        }
+    }
+
+    @Test
+    @DisplayName("동시 양방향 이체")
+    void concurrentTransfer() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    // 짝수 스레드와 홀수 스레드가 같은 회원 쌍을 반대 방향으로 이체
+                    String a = "lock" + ((thread / 2 + i) % ACCOUNTS);
+                    String b = "lock" + ((thread / 2 + i + 1) % ACCOUNTS);
+                    if (thread % 2 == 0) {
+                        lockingService.accountTransfer(a, b, 1);
+                    } else {
+                        lockingService.accountTransfer(b, a, 1);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        // 같은 회원 쌍을 양방향으로 같은 횟수만큼 이체했으므로 모든 잔액이 그대로여야 한다.
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Assertions.assertThat(memberRepository.findById("lock" + i).getMoney()).isEqualTo(100_000);
+        }
+
+        int transfers = THREADS * TRANSFERS_PER_THREAD;
+        log.info("transfers={}, elapsed={}ms, tps={}", transfers, elapsed / 1_000_000, transfers * 1_000_000_000L / elapsed);
+        lockManager.getContendedStripes().forEach(stripe -> log.info("{}", stripe));
+    }
+
+    @Test
+    @DisplayName("stripe 순서 고정")
+    void canonicalOrder() {
+        AccountLockManager manager = new AccountLockManager(3);
+        Assertions.assertThat(manager.getStripeCount()).isEqualTo(4);
+
+        manager.runLocked("lock0", "lock1", () -> { });
+        manager.runLocked("lock1", "lock0", () -> { });
+        Assertions.assertThat(manager.getStripe("lock0").getAcquisitionCount()).isEqualTo(2);
+    }
+
+    /**
+     * 잔액을 조회한 뒤 계산한 값으로 덮어쓴다. 조회와 수정 사이에 다른 이체가 끼어들면 갱신 손실이 생긴다.
+     */
+    static class ReadModifyWriteRepository extends MemberRepositoryV5 {
+
+        ReadModifyWriteRepository(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public int adjustBalance(String memberId, int delta) {
+            int money = findById(memberId).getMoney() + delta;
+            if (money < 0) {
+                return 0;
+            }
+            Thread.yield(); // 다른 이체가 끼어들 틈을 넓힌다.
+            update(memberId, money);
+            return 1;
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.MemberSchema;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 낙관적 락 + 재시도
+ */
+@Slf4j
+class MemberOptimisticTransferServiceTest {
+
+    public static final String MEMBER_A = "optA";
+    public static final String MEMBER_B = "optB";
+    static final int THREADS = 8;
+    static final int TRANSFERS_PER_THREAD = 50;
+
+    HikariDataSource dataSource;
+    MemberRepository memberRepository;
+    MemberOptimisticTransferService memberService;
+
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(ConnectionConst.URL);
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+
+        memberRepository = new MemberRepositoryV5(dataSource);
+        memberService = new MemberOptimisticTransferService(new DataSourceTransactionManager(dataSource), memberRepository,
+                50, Duration.ofMillis(1));
+
+        memberRepository.save(new Member(MEMBER_A, 100_000));
+        memberRepository.save(new Member(MEMBER_B, 100_000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("동시 이체 - 갱신 손실 없음")
+    void concurrentTransfer() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            boolean forward = t % 2 == 0;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    if (forward) {
+                        memberService.accountTransfer(MEMBER_A, MEMBER_B, 10);
+                    } else {
+                        memberService.accountTransfer(MEMBER_B, MEMBER_A, 1);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // 정방향 4스레드 * 50건 * 10원, 역방향 4스레드 * 50건 * 1원
+        int moved = (THREADS / 2) * TRANSFERS_PER_THREAD * (10 - 1);
+        Assertions.assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(100_000 - moved);
+        Assertions.assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(100_000 + moved);
+
+        log.info("transfers={}, conflicts={}, retries={}, conflictRate={}, retryRate={}",
+                memberService.getTransferCount(), memberService.getConflictCount(), memberService.getRetryCount(),
+                memberService.getConflictRate(), memberService.getRetryRate());
+    }
+
+}
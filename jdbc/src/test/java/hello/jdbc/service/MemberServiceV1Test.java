@@ -1,10 +1,12 @@
 package hello.jdbc.service;
 
 import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.MemberSchema;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepositoryV1;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -24,6 +26,11 @@ public class MemberServiceV1Test {
     private MemberRepositoryV1 memberRepository;
     private MemberServiceV1 memberService;
 
+    @BeforeAll
+    static void createSchema() {
+        MemberSchema.create();
+    }
+
     @BeforeEach
     void before() {
         DriverManagerDataSource dataSource = new DriverManagerDataSource(ConnectionConst.URL, ConnectionConst.USERNAME, ConnectionConst.PASSWORD);
@@ -123,4 +123,22 @@ public class MemberServiceV4Test {
         Assertions.assertThat(findMemberB.getMoney()).isEqualTo(10000);
     }
 
+    @Test
+    @DisplayName("잔액 부족")
+    void accountTransferInsufficientMoney() {
+        // given
+        Member memberA = new Member(MEMBER_A, 1000);
+        Member memberB = new Member(MEMBER_B, 10000);
+        memberRepository.save(memberA);
+        memberRepository.save(memberB);
+
+        // when
+        Assertions.assertThatThrownBy(() -> memberService.accountTransfer(memberA.getMemberId(), memberB.getMemberId(), 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        Assertions.assertThat(memberRepository.findById(memberA.getMemberId()).getMoney()).isEqualTo(1000);
+        Assertions.assertThat(memberRepository.findById(memberB.getMemberId()).getMoney()).isEqualTo(10000);
+    }
+
 }
@@ -0,0 +1,215 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.repository.MemberRepositoryV5;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * 가상 스레드 / 플랫폼 스레드 풀 비교
+ * 1만 건의 이체를 한 번에 제출하고 처리량과 p99 지연 시간(제출 ~ 완료)을 비교한다.
+ */
+@Slf4j
+@SpringBootTest
+class MemberTransferExecutorTest {
+
+    static final int PAIRS = 100;
+    static final int REQUESTS = 10_000;
+    static final int POOL_SIZE = 10; // Hikari 기본 maximumPoolSize
+
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private MemberServiceV4 memberService;
+    @Autowired
+    @Qualifier("memberServiceV4Template")
+    private MemberServiceV4 memberServiceTemplate;
+
+    @TestConfiguration
+    static class TestConfig {
+
+        private final DataSource dataSource;
+
+        public TestConfig(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Bean
+        @Primary
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV4_2(dataSource); // DataSourceUtils
+        }
+
+        @Bean
+        @Primary
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4Template() {
+            return new MemberServiceV4(new MemberRepositoryV5(dataSource)); // JdbcTemplate
+        }
+    }
+
+    @BeforeEach
+    void before() {
+        for (int i = 0; i < PAIRS * 2; i++) {
+            memberRepository.save(new Member(memberId(i), 1_000_000));
+        }
+    }
+
+    @AfterEach
+    void after() {
+        for (int i = 0; i < PAIRS * 2; i++) {
+            memberRepository.delete(memberId(i));
+        }
+    }
+
+    @Test
+    @DisplayName("가상 스레드 vs 플랫폼 스레드 풀 - 처리량, p99")
+    void compareThroughput() throws Exception {
+        // 워밍업
+        run(MemberTransferExecutor.platformThreads(memberService, POOL_SIZE), 1_000);
+
+        Result platform = run(MemberTransferExecutor.platformThreads(memberService, POOL_SIZE), REQUESTS);
+        Result virtual = run(MemberTransferExecutor.virtualThreads(memberService, POOL_SIZE * 2), REQUESTS);
+
+        log.info("platform(pool={}) {}", POOL_SIZE, platform);
+        log.info("virtual {}", virtual);
+
+        Assertions.assertThat(platform.failed).isZero();
+        Assertions.assertThat(virtual.failed).isZero();
+        assertBalanced();
+    }
+
+    @Test
+    @DisplayName("DataSourceUtils / JdbcTemplate 경로에서 캐리어 스레드 고정(pinning)이 없어야 한다")
+    void noPinningInSpringJdbcPath() throws Exception {
+        Map<String, LongAdder> pinnedAt = new ConcurrentHashMap<>();
+        Map<String, LongAdder> monitorHolders = new ConcurrentHashMap<>();
+
+        try (RecordingStream recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", event -> {
+                if (event.getStackTrace() != null) {
+                    List<RecordedFrame> frames = event.getStackTrace().getFrames();
+                    pinnedAt.computeIfAbsent(culprit(frames), key -> new LongAdder()).increment();
+                    for (String holder : synchronizedApplicationFrames(frames)) {
+                        monitorHolders.computeIfAbsent(holder, key -> new LongAdder()).increment();
+                    }
+                }
+            });
+            recording.startAsync();
+
+            run(MemberTransferExecutor.virtualThreads(memberService), 2_000);
+            run(MemberTransferExecutor.virtualThreads(memberServiceTemplate), 2_000);
+
+            recording.stop();
+        }
+
+        // 드라이버(H2) 내부의 synchronized는 이 프로젝트에서 고칠 수 없으므로 기록만 남긴다.
+        pinnedAt.forEach((frame, count) -> log.info("pinned at {} count={}", frame, count.sum()));
+        monitorHolders.forEach((frame, count) -> log.info("monitor held by {} count={}", frame, count.sum()));
+        Assertions.assertThat(pinnedAt.keySet()).noneMatch(MemberTransferExecutorTest::isApplicationOrSpring);
+        // 블로킹은 드라이버에서 일어나도, 스택 아래쪽의 애플리케이션/스프링 synchronized 메서드가 고정의 원인일 수 있다.
+        Assertions.assertThat(monitorHolders).isEmpty();
+    }
+
+    private Result run(MemberTransferExecutor executor, int requests) throws Exception {
+        List<Future<Void>> futures = new ArrayList<>(requests);
+        long start = System.nanoTime();
+        try (executor) {
+            for (int i = 0; i < requests; i++) {
+                // 쌍마다 이체 방향이 한쪽으로 고정되어 있어서 데드락이 생기지 않는다.
+                int pair = i % PAIRS;
+                futures.add(executor.submitTransfer(memberId(pair * 2), memberId(pair * 2 + 1), 1));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    log.info("transfer failed", e);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Result(executor.getMode(), requests, elapsed, executor.getFailedCount(),
+                executor.getLatency().getPercentile(0.99, TimeUnit.MILLISECONDS));
+    }
+
+    // 스택에서 JDK 프레임을 제외한 가장 위쪽 프레임 = 고정된 상태로 블로킹을 일으킨 코드
+    private static String culprit(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName();
+            }
+        }
+        return "jdk";
+    }
+
+    // 스택 전체에서 모니터를 잡고 있는 애플리케이션/스프링 메서드 (synchronized 블록은 JFR 프레임으로 알 수 없어서 메서드만 확인한다)
+    private static List<String> synchronizedApplicationFrames(List<RecordedFrame> frames) {
+        List<String> holders = new ArrayList<>();
+        for (RecordedFrame frame : frames) {
+            String name = frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+            if (isApplicationOrSpring(name) && Modifier.isSynchronized(frame.getMethod().getModifiers())) {
+                holders.add(name);
+            }
+        }
+        return holders;
+    }
+
+    private static boolean isApplicationOrSpring(String frame) {
+        return frame.startsWith("org.springframework.") || frame.startsWith("hello.jdbc.");
+    }
+
+    private void assertBalanced() {
+        long total = 0;
+        for (int i = 0; i < PAIRS * 2; i++) {
+            total += memberRepository.findById(memberId(i)).getMoney();
+        }
+        Assertions.assertThat(total).isEqualTo(PAIRS * 2 * 1_000_000L);
+    }
+
+    private static String memberId(int i) {
+        return "vt" + i;
+    }
+
+    private record Result(MemberTransferExecutor.Mode mode, int requests, long elapsedNanos, long failed, long p99Millis) {
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            return mode + " requests=" + requests + ", elapsed=" + String.format("%.2f", seconds) + "s"
+                    + ", throughput=" + (long) (requests / seconds) + "/s, p99=" + p99Millis + "ms, failed=" + failed;
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import lombok.extern.slf4j.Slf4j;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.Advisor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Role;
+import org.springframework.dao.CannotAcquireLockException;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * 일시적인 락 실패 재시도
+ * 입금(adjustBalance) 단계에서 정해진 횟수만큼 CannotAcquireLockException을 던지는 Repository로 확인한다.
+ */
+@Slf4j
+@SpringBootTest
+class TransientFailureRetryInterceptorTest {
+
+    public static final String MEMBER_A = "retryA";
+    public static final String MEMBER_B = "retryB";
+    public static final String MEMBER_EX = "ex";
+
+    @Autowired
+    private FlakyMemberRepository memberRepository;
+    @Autowired
+    private MemberServiceV4 memberService;
+    @Autowired
+    private TransientFailureRetryInterceptor retryInterceptor;
+
+    @TestConfiguration
+    static class TestConfig {
+
+        @Bean
+        FlakyMemberRepository memberRepository(DataSource dataSource) {
+            return new FlakyMemberRepository(dataSource);
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4(MemberRepository memberRepository) {
+            return new MemberServiceV4(memberRepository);
+        }
+
+        @Bean
+        static TransientFailureRetryInterceptor transientFailureRetryInterceptor() {
+            return new TransientFailureRetryInterceptor(3, Duration.ofMillis(1));
+        }
+
+        // 스프링 부트의 자동 프록시 생성기는 인프라 역할의 advisor만 적용한다.
+        @Bean
+        @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+        static Advisor transientFailureRetryAdvisor(TransientFailureRetryInterceptor transientFailureRetryInterceptor) {
+            return transientFailureRetryInterceptor.advisor();
+        }
+    }
+
+    @BeforeEach
+    void before() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+    }
+
+    @AfterEach
+    void after() {
+        memberRepository.failures.set(0);
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @Test
+    @DisplayName("락 획득 실패 후 재시도로 성공")
+    void recoverAfterRetry() {
+        memberRepository.failures.set(2);
+
+        memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000);
+
+        // 실패한 시도의 출금은 롤백되고 마지막 시도만 반영되어야 한다.
+        Assertions.assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        Assertions.assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+
+        TransientFailureRetryInterceptor.RetryStats stats = retryInterceptor.getStats().get("MemberServiceV4.accountTransfer");
+        log.info("{}", stats);
+        Assertions.assertThat(stats.getRetryCount()).isGreaterThanOrEqualTo(2);
+        Assertions.assertThat(stats.getRecoveredCount()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("재시도 횟수를 모두 쓰면 예외를 그대로 던진다")
+    void exhausted() {
+        memberRepository.failures.set(100);
+        long exhaustedBefore = exhaustedCount();
+
+        Assertions.assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000))
+                .isInstanceOf(CannotAcquireLockException.class);
+
+        Assertions.assertThat(exhaustedCount()).isEqualTo(exhaustedBefore + 1);
+        Assertions.assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        Assertions.assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("비즈니스 예외는 재시도하지 않는다")
+    void noRetryForBusinessException() {
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+        int callsBefore = memberRepository.adjustCalls.get();
+
+        Assertions.assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        // 출금 한 번 후 검증에서 실패, 재시도 없음
+        Assertions.assertThat(memberRepository.adjustCalls.get() - callsBefore).isEqualTo(1);
+    }
+
+    private long exhaustedCount() {
+        TransientFailureRetryInterceptor.RetryStats stats = retryInterceptor.getStats().get("MemberServiceV4.accountTransfer");
+        return stats == null ? 0 : stats.getExhaustedCount();
+    }
+
+    static class FlakyMemberRepository extends MemberRepositoryV4_2 {
+
+        // 남은 실패 횟수 - 입금(delta > 0) 시점에 락 획득 실패를 흉내낸다.
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger adjustCalls = new AtomicInteger();
+
+        FlakyMemberRepository(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public int adjustBalance(String memberId, int delta) {
+            adjustCalls.incrementAndGet();
+            if (delta > 0 && failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new CannotAcquireLockException("simulated lock timeout memberId=" + memberId);
+            }
+            return super.adjustBalance(memberId, delta);
+        }
+    }
+
+}